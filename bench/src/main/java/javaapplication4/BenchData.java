@@ -0,0 +1,96 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Benchmark inputs: the seeded workload of a scale, with its database also in
+ * tabular form. Files are written once per scale under the temporary
+ * directory and reused by later forks.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+final class BenchData {
+
+    /** Seed of every data set. */
+    private static final long SEED = 7;
+
+    /** FASTA database. */
+    final String fasta;
+
+    /** Tabular database. */
+    final String tab;
+
+    /** Peptide report. */
+    final String report;
+
+    private BenchData(String fasta, String tab, String report) {
+        this.fasta = fasta;
+        this.tab = tab;
+        this.report = report;
+    }
+
+    /**
+     * Returns the inputs of a scale, writing them if absent.
+     *
+     * @param proteins number of database entries
+     * @param peptides number of report rows
+     * @return inputs
+     * @throws IOException
+     */
+    static BenchData of(int proteins, int peptides) throws IOException {
+
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+                "kinamine-bench");
+        dir.mkdirs();
+
+        String name = proteins + "-" + peptides;
+        File fasta = new File(dir, name + ".fasta");
+        File tab = new File(dir, name + ".tab");
+        File report = new File(dir, name + ".txt");
+
+        if (!fasta.exists() || !tab.exists() || !report.exists()) {
+            write(proteins, peptides, new File(dir, name).getPath(), tab);
+        }
+
+        return new BenchData(fasta.getPath(), tab.getPath(),
+                report.getPath());
+    }
+
+    /**
+     * Writes the workload of a scale and its database in tabular form.
+     *
+     * @param proteins
+     * @param peptides
+     * @param prefix
+     * @param tab
+     * @throws IOException
+     */
+    private static void write(int proteins, int peptides, String prefix,
+            File tab) throws IOException {
+
+        Workload.write(prefix, proteins, peptides, SEED);
+
+        try (BufferedWriter out = Files.newBufferedWriter(tab.toPath(),
+                StandardCharsets.US_ASCII)) {
+            for (String line
+                    : KinaMineDriver.retFastaFile(prefix + ".fasta")) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading whole reference databases: FASTA and tabular files into lines,
+ * protein construction from the sequences, and the sequence index of the
+ * FASTA, built and searched for a peptide of every entry.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class DatabaseBenchmark {
+
+    /** Number of database entries. */
+    @Param({"20000", "200000"})
+    int proteins;
+
+    /** Inputs of the scale. */
+    BenchData data;
+
+    /** Sequences of the database. */
+    ArrayList<String> seqs;
+
+    /** Sequence index of the database. */
+    SequenceIndex sequences;
+
+    /** A peptide cut from each sequence. */
+    ArrayList<String> peptides;
+
+    @Setup
+    public void setup() throws IOException {
+
+        data = BenchData.of(proteins, 1000);
+
+        seqs = new ArrayList<>(proteins);
+        for (String line : KinaMineDriver.retTabFile(data.tab)) {
+            seqs.add(line.substring(line.lastIndexOf('\t') + 1));
+        }
+
+        sequences = SequenceIndex.build(data.fasta);
+
+        peptides = new ArrayList<>(proteins);
+        for (String seq : seqs) {
+            int start = seq.length() / 2;
+            peptides.add(seq.substring(start, Math.min(seq.length(),
+                    start + 12)));
+        }
+    }
+
+    @Benchmark
+    public ArrayList<String> retFastaFile() {
+        return KinaMineDriver.retFastaFile(data.fasta);
+    }
+
+    @Benchmark
+    public ArrayList<String> retTabFile() {
+        return KinaMineDriver.retTabFile(data.tab);
+    }
+
+    @Benchmark
+    public void protein(Blackhole bh) {
+        for (String seq : seqs) {
+            bh.consume(new Protein(seq));
+        }
+    }
+
+    @Benchmark
+    public SequenceIndex sequenceIndex() throws IOException {
+        return SequenceIndex.build(data.fasta);
+    }
+
+    @Benchmark
+    public void entries(Blackhole bh) {
+        for (String peptide : peptides) {
+            bh.consume(sequences.entries(peptide));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Enrichment scoring of the motifs of a run against the tyrosine windows of
+ * their proteins, by permutation and by bootstrap. The run is filled once
+ * up to its motifs; each invocation scores it again from the same seed.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class EnrichmentBenchmark {
+
+    /** Number of database entries. */
+    @Param({"20000"})
+    int proteins;
+
+    /** Number of report rows. */
+    @Param({"10000", "100000"})
+    int peptides;
+
+    /** Number of resamples. */
+    @Param({"1000"})
+    int resamples;
+
+    /** Draw with replacement. */
+    @Param({"false", "true"})
+    boolean bootstrap;
+
+    /** Run with its motifs generated. */
+    Run run;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        BenchData data = BenchData.of(proteins, peptides);
+
+        run = new Run();
+        try (ReportReader report = ReportReader.open(data.report)) {
+            run.extractPeptides(report, 0.5);
+        }
+        run.extractDatabase(data.fasta);
+        run.generateMotifs();
+    }
+
+    @Benchmark
+    public MotifEnrichment scoreEnrichment() {
+        run.scoreEnrichment(resamples, bootstrap, 7);
+        return run.enrichment;
+    }
+}
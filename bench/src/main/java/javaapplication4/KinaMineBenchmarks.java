@@ -0,0 +1,40 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so every result reports
+ * allocation rate next to throughput. Accepts the usual JMH options, such as
+ * a benchmark pattern or -p proteins=20000 to restrict the scales.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class KinaMineBenchmarks {
+
+    private KinaMineBenchmarks() {
+    }
+
+    public static void main(String[] args)
+            throws CommandLineOptionException, RunnerException {
+
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
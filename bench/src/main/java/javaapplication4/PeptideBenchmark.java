@@ -0,0 +1,84 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of the peptide report: row filtering and peptide extraction, and
+ * the modification site parser on its own.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class PeptideBenchmark {
+
+    /** Number of report rows. */
+    @Param({"1000", "10000", "100000"})
+    int peptides;
+
+    /** Inputs of the scale. */
+    BenchData data;
+
+    /** Modification fields of the report. */
+    ArrayList<String> mods;
+
+    @Setup
+    public void setup() throws IOException {
+
+        data = BenchData.of(20000, peptides);
+
+        mods = new ArrayList<>(peptides);
+        try (ReportReader report = ReportReader.open(data.report)) {
+            int col = report.column(3, "Variable Modifications");
+            while (report.next()) {
+                mods.add(report.field(col));
+            }
+        }
+    }
+
+    @Benchmark
+    public Run extractPeptides() throws IOException {
+
+        Run run = new Run();
+        try (ReportReader report = ReportReader.open(data.report)) {
+            run.extractPeptides(report, 0.5);
+        }
+
+        return run;
+    }
+
+    @Benchmark
+    public void sites(Blackhole bh) {
+        for (String mod : mods) {
+            bh.consume(ModParser.PHOSPHO_Y.sites(mod));
+        }
+    }
+}
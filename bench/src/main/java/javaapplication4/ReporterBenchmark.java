@@ -0,0 +1,81 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Report writing from a completed run.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class ReporterBenchmark {
+
+    /** Number of database entries. */
+    @Param({"20000", "200000"})
+    int proteins;
+
+    /** Number of report rows. */
+    @Param({"1000", "10000", "100000"})
+    int peptides;
+
+    /** Completed run. */
+    Run run;
+
+    /** Report written by each invocation. */
+    File out;
+
+    @Setup
+    public void setup() throws IOException {
+
+        BenchData data = BenchData.of(proteins, peptides);
+        try (ReportReader report = ReportReader.open(data.report)) {
+            run = new Run(report, data.fasta, 0.5);
+        }
+
+        out = File.createTempFile("kinamine-bench", ".csv");
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.delete();
+    }
+
+    @Benchmark
+    public void substrates() {
+        Reporter.substrates(run, out.getPath(), false);
+    }
+
+    @Benchmark
+    public int frequencies() {
+        return Reporter.frequencies(run, out.getPath(), false);
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Run stages that depend on both the report and the database: extraction of
+ * the referenced proteins, placement of the peptides in them, and motif
+ * generation, which merges the window of every phospho-tyrosine. The report
+ * and the database are read once per trial; each invocation only starts a
+ * new run from them, filled up to the stage under test.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class RunBenchmark {
+
+    /** Number of database entries. */
+    @Param({"20000", "200000"})
+    int proteins;
+
+    /** Number of report rows. */
+    @Param({"1000", "10000", "100000"})
+    int peptides;
+
+    /** Inputs of the scale. */
+    BenchData data;
+
+    /** Loaded database. */
+    ProteinSource proteome;
+
+    /** Run the report was read into. */
+    Run report;
+
+    /** Run with peptides extracted. */
+    Run extracted;
+
+    /** Run with peptides and proteins extracted. */
+    Run loaded;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        data = BenchData.of(proteins, peptides);
+        proteome = KinaMineDriver.loadProteome(data.fasta);
+
+        report = new Run();
+        try (ReportReader rows = ReportReader.open(data.report)) {
+            report.extractPeptides(rows, 0.5);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+
+        extracted = extract();
+
+        loaded = extract();
+        loaded.extractDatabase(proteome);
+    }
+
+    /**
+     * Starts a run holding the peptides and inclusion list of the report.
+     *
+     * @return run with peptides extracted
+     */
+    private Run extract() {
+
+        Run run = new Run();
+        run.pepList.addAll(report.pepList);
+        for (String ref : report.reported) {
+            run.database.put(ref, null);
+            run.reported.add(ref);
+        }
+
+        return run;
+    }
+
+    @Benchmark
+    public Run extractDatabase() {
+        extracted.extractDatabase(data.fasta);
+        return extracted;
+    }
+
+    @Benchmark
+    public Run mapPeptides() {
+        loaded.mapPeptides();
+        return loaded;
+    }
+
+    @Benchmark
+    public Run generateMotifs() {
+        loaded.generateMotifs();
+        return loaded;
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of the accessions referenced by a peptide report. Resolves FASTA
+ * header ids to referenced accessions with exact semantics: UniProt headers
+ * (sp|ACC|NAME, tr|ACC|NAME) are parsed once and looked up in a hash map,
+ * other identifiers are matched against a prefix trie of the accessions.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class AccessionIndex {
+
+    /** Referenced accessions. */
+    private final Map<String, String> accessions;
+
+    /** Prefix trie of referenced accessions. */
+    private final Node trie;
+
+    /**
+     * Node of the prefix trie. Terminal nodes hold the accession they end.
+     */
+    private static final class Node {
+
+        Map<Character, Node> next = new HashMap<>();
+
+        String accession;
+    }
+
+    /**
+     * Constructs an index over the referenced accessions.
+     *
+     * @param refs accessions from the inclusion list
+     */
+    public AccessionIndex(Collection<String> refs) {
+
+        this.accessions = new HashMap<>();
+        this.trie = new Node();
+
+        for (String ref : refs) {
+            accessions.put(ref, ref);
+            insert(ref);
+        }
+    }
+
+    /**
+     * Adds an accession to the prefix trie.
+     *
+     * @param ref
+     */
+    private void insert(String ref) {
+
+        Node node = trie;
+        for (int i = 0; i < ref.length(); i++) {
+            node = node.next.computeIfAbsent(ref.charAt(i), c -> new Node());
+        }
+        node.accession = ref;
+    }
+
+    /**
+     * Resolves a header id to the referenced accession it names exactly.
+     *
+     * @param header FASTA header id
+     * @return referenced accession, or null
+     */
+    public String resolve(String header) {
+
+        String acc = accession(header);
+
+        String ref = accessions.get(acc);
+        if (ref == null && !isUniProt(header)) {
+            ref = longestPrefix(acc);
+        }
+
+        return ref;
+    }
+
+    /**
+     * Resolves an isoform header id to its referenced canonical accession.
+     *
+     * @param header FASTA header id
+     * @return referenced canonical accession, or null
+     */
+    public String resolveCanonical(String header) {
+
+        String acc = accession(header);
+        String base = canonical(acc);
+
+        if (base == acc) {
+            return null;
+        }
+
+        String ref = accessions.get(base);
+        if (ref == null && !isUniProt(header)) {
+            ref = longestPrefix(base);
+        }
+
+        return ref;
+    }
+
+    /**
+     * Returns the longest referenced accession that is a prefix of the id
+     * and ends at an identifier boundary.
+     *
+     * @param id
+     * @return referenced accession, or null
+     */
+    private String longestPrefix(String id) {
+
+        String match = null;
+        Node node = trie;
+
+        for (int i = 0; i < id.length() && node != null; i++) {
+            node = node.next.get(id.charAt(i));
+            if (node != null && node.accession != null
+                    && isBoundary(id, i + 1)) {
+                match = node.accession;
+            }
+        }
+
+        return match;
+    }
+
+    /**
+     * Determine if an identifier ends at index.
+     *
+     * @param id
+     * @param index
+     * @return
+     */
+    private static boolean isBoundary(String id, int index) {
+
+        if (index == id.length()) {
+            return true;
+        }
+
+        char c = id.charAt(index);
+        return !Character.isLetterOrDigit(c) && c != '-';
+    }
+
+    /**
+     * Determine if a header id is in UniProt form (sp|ACC|NAME, tr|ACC|NAME).
+     *
+     * @param header FASTA header id
+     * @return
+     */
+    public static boolean isUniProt(String header) {
+
+        int start = header.startsWith(">") ? 1 : 0;
+
+        return header.startsWith("sp|", start)
+                || header.startsWith("tr|", start);
+    }
+
+    /**
+     * Parses the accession from a UniProt header id. Other ids are returned
+     * without the leading '>'.
+     *
+     * @param header FASTA header id
+     * @return accession
+     */
+    public static String accession(String header) {
+
+        int start = header.startsWith(">") ? 1 : 0;
+
+        if (!isUniProt(header)) {
+            return start == 0 ? header : header.substring(start);
+        }
+
+        int first = start + 2;
+        int second = header.indexOf('|', first + 1);
+        if (second < 0) {
+            second = header.length();
+        }
+
+        return header.substring(first + 1, second);
+    }
+
+    /**
+     * Returns the leading letters and digits of an accession. Accessions that
+     * are an isoform or a prefix of one another at an identifier boundary
+     * share their root.
+     *
+     * @param acc
+     * @return root
+     */
+    public static String root(String acc) {
+
+        int end = 0;
+        while (end < acc.length()
+                && Character.isLetterOrDigit(acc.charAt(end))) {
+            end++;
+        }
+
+        return acc.substring(0, end);
+    }
+
+    /**
+     * Strips an isoform suffix (ACC-n) from an accession.
+     *
+     * @param acc
+     * @return canonical accession, or acc itself if not an isoform
+     */
+    public static String canonical(String acc) {
+
+        int dash = acc.lastIndexOf('-');
+        if (dash <= 0 || dash == acc.length() - 1) {
+            return acc;
+        }
+
+        for (int i = dash + 1; i < acc.length(); i++) {
+            if (!Character.isDigit(acc.charAt(i))) {
+                return acc;
+            }
+        }
+
+        return acc.substring(0, dash);
+    }
+}
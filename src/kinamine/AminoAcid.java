@@ -10,15 +10,17 @@
 
 package javaapplication4;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
-
-public class AminoAcid {
-    
-    /** Map of amino acids and properties. */
-    public final Map<Character, ArrayList<String>> aAcids;
+/**
+ * Amino acids and their properties. Amino acids are identified by residue
+ * code, their index in ACIDS, and property membership is held as a bitmask
+ * per residue code, with bit i set for PROPS[i].
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class AminoAcid {
     
     /** Properties Global Static. */
     public final static String[] PROPS = {"Hydrophobic", "Polar", "Small",
@@ -29,76 +31,81 @@ public class AminoAcid {
     public final static char[] ACIDS = {'A', 'C', 'D', 'E', 'F', 'G', 'H',
         'I', 'K', 'L', 'M', 'N', 'P', 'Q', 'R', 'S', 'T', 'V', 'W', 'Y'};
 
-     
-    /**
-     * Creates a static AminoAcid object. Contains the map of amino acids with
-     * corresponding properties, along with globals of amino acids and props. 
-     */
-    public AminoAcid(){
-        
-        this.aAcids = new HashMap();
-        
-        /** Initialize amino acids in map. */
-        initAcids();
-        
-        /** Initialize properties from frequencies. */
-        initProps();      
+    /** Residue code of tyrosine. */
+    public final static int TYR = 19;
+
+    /** Property bitmask of each residue code. */
+    private final static int[] MASKS = {
+        props(0, 2, 7),     // A
+        props(0, 2),        // C
+        props(1, 2, 3),     // D
+        props(1, 3),        // E
+        props(0, 8),        // F
+        props(0, 2, 7),     // G
+        props(1, 4),        // H
+        props(0, 6),        // I
+        props(1, 4),        // K
+        props(0, 6),        // L
+        props(0),           // M
+        props(1, 2, 5),     // N
+        props(2),           // P
+        props(1, 5),        // Q
+        props(1, 4),        // R
+        props(2, 9),        // S
+        props(2, 9),        // T
+        props(0, 2, 7),     // V
+        props(0, 8),        // W
+        props(0, 8)};       // Y
+
+    /** Residue code of each ASCII character, -1 if not an amino acid. */
+    private final static byte[] CODES = new byte[128];
+
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        for (int i = 0; i < ACIDS.length; i++) {
+            CODES[ACIDS[i]] = (byte) i;
+        }
     }
-    
+
+    private AminoAcid() {
+    }
+
     /**
-     * Initializes the amino acids from global static list. 
+     * Returns the residue code of an amino acid.
+     *
+     * @param acid
+     * @return residue code, or -1 if not an amino acid
      */
-    private void initAcids() {
-        
-        for (char acid : ACIDS){
-            aAcids.put(acid, new ArrayList<>());
-        }
-        
+    public static int code(char acid) {
+        return acid < CODES.length ? CODES[acid] : -1;
     }
-    
+
     /**
-     * Initialize the properties from global static list. 
+     * Determine if an amino acid has a property.
+     *
+     * @param code residue code
+     * @param prop index of property in PROPS
+     * @return
      */
-    private void initProps() {
-            
-        aAcids.get('A').addAll(getProps(0,2,7));
-        aAcids.get('C').addAll(getProps(0,2));
-        aAcids.get('D').addAll(getProps(1,2,3));
-        aAcids.get('E').addAll(getProps(1,3));
-        aAcids.get('F').addAll(getProps(0,8));
-        aAcids.get('G').addAll(getProps(0,2,7));
-        aAcids.get('H').addAll(getProps(1,4));
-        aAcids.get('I').addAll(getProps(0,6));
-        aAcids.get('K').addAll(getProps(1,4));
-        aAcids.get('L').addAll(getProps(0,6));
-        aAcids.get('M').addAll(getProps(0));
-        aAcids.get('N').addAll(getProps(1,2,5));
-        aAcids.get('P').addAll(getProps(2));
-        aAcids.get('Q').addAll(getProps(1,5));
-        aAcids.get('R').addAll(getProps(1,4));
-        aAcids.get('S').addAll(getProps(2,9));
-        aAcids.get('T').addAll(getProps(2,9));
-        aAcids.get('V').addAll(getProps(0,2,7));
-        aAcids.get('W').addAll(getProps(0,8));
-        aAcids.get('Y').addAll(getProps(0,8));        
-        
+    public static boolean hasProp(int code, int prop) {
+        return (MASKS[code] & (1 << prop)) != 0;
     }
-    
+
     /** 
-     * Return list of properties corresponding to indexes.
+     * Return bitmask of properties corresponding to indexes.
      * 
      * @param ints Indices of properties.
      * @return
      */
-    private ArrayList<String> getProps(int... ints) {
+    private static int props(int... ints) {
         
-       ArrayList<String> props = new ArrayList<>();
+       int mask = 0;
        
        for (int index : ints){
-           props.add(PROPS[index]);
+           mask |= 1 << index;
        }
        
-       return props;
+       return mask;
         
     } 
 }
@@ -0,0 +1,112 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffered writer for CSV reports. Each row is built in a single reusable
+ * StringBuilder, copied into a reusable char array and written through a
+ * large buffer as UTF-8, optionally gzip-compressed.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class CsvWriter implements Closeable {
+
+    /** Size of the output buffer. */
+    private static final int BUFFER = 1 << 16;
+
+    /** File extension of compressed reports. */
+    public static final String GZIP = ".gz";
+
+    /** Destination of the report. */
+    private final Writer writer;
+
+    /** Row being built. */
+    private final StringBuilder row = new StringBuilder(256);
+
+    /** Characters of the row being written. */
+    private char[] chars = new char[256];
+
+    /**
+     * Opens a report file.
+     *
+     * @param path
+     * @param gzip true to compress the report
+     * @throws IOException
+     */
+    public CsvWriter(String path, boolean gzip) throws IOException {
+
+        OutputStream out = new FileOutputStream(path);
+        if (gzip) {
+            try {
+                out = new GZIPOutputStream(out, BUFFER);
+            } catch (IOException ioexception) {
+                out.close();
+                throw ioexception;
+            }
+        }
+
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER);
+    }
+
+    /**
+     * Starts a new row.
+     *
+     * @return empty row builder
+     */
+    public StringBuilder row() {
+        row.setLength(0);
+        return row;
+    }
+
+    /**
+     * Writes the row built since the last call to row(), ending the line.
+     *
+     * @throws IOException
+     */
+    public void endRow() throws IOException {
+
+        row.append('\n');
+
+        int length = row.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+        }
+
+        row.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+    }
+
+    /**
+     * Writes text as is.
+     *
+     * @param text
+     * @throws IOException
+     */
+    public void write(String text) throws IOException {
+        writer.write(text);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
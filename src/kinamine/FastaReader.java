@@ -0,0 +1,357 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Streaming reader for FASTA databases. The file is memory-mapped and scanned
+ * once, emitting exactly one record per '>' header. Sequence bytes of entries
+ * rejected by the filter are skipped without being copied.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class FastaReader {
+
+    /** Largest region of the file mapped at once. */
+    private static final long REGION = 1L << 30;
+
+    /**
+     * Receives each accepted FASTA record.
+     */
+    public interface Handler {
+
+        /**
+         * @param id first token of the header line, without the '>'
+         * @param seq sequence with line breaks removed
+         */
+        void record(String id, String seq);
+    }
+
+    /**
+     * Header ids and sequence byte ranges of a FASTA file, over its mapped
+     * regions. Sequences are only copied out on request.
+     */
+    public static final class Entries implements ProteinSource {
+
+        /** Mapped regions of the file. */
+        private final ArrayList<MappedByteBuffer> regions = new ArrayList<>();
+
+        /** Header id of each entry. */
+        private final ArrayList<String> ids = new ArrayList<>();
+
+        /** Byte range of each entry's sequence lines. */
+        private long[] starts = new long[1024];
+        private long[] ends = new long[1024];
+
+        private Entries() {
+        }
+
+        @Override
+        public int size() {
+            return ids.size();
+        }
+
+        @Override
+        public String id(int i) {
+            return ids.get(i);
+        }
+
+        @Override
+        public Protein protein(int i) {
+            return new Protein(seq(i));
+        }
+
+        /**
+         * Copies the sequence of an entry out of the mapped file straight
+         * into the store.
+         *
+         * @param i entry
+         * @param store
+         * @return protein
+         */
+        @Override
+        public Protein protein(int i, PackedProteome store) {
+
+            long start = starts[i];
+            long end = ends[i];
+
+            ByteBuffer chunk = store.reserve((int) Math.max(0, end - start));
+            int offset = chunk.position();
+
+            for (long pos = start; pos < end; pos++) {
+                MappedByteBuffer region = regions.get((int) (pos / REGION));
+                byte b = region.get((int) (pos % REGION));
+                if (b > ' ') {
+                    chunk.put(b);
+                }
+            }
+
+            return new Protein(store.added(chunk, offset));
+        }
+
+        @Override
+        public CharSequence sequence(int i) {
+            return seq(i);
+        }
+
+        /**
+         * Copies the sequence of an entry out of the mapped file.
+         *
+         * @param i entry
+         * @return sequence with line breaks removed
+         */
+        public String seq(int i) {
+
+            long start = starts[i];
+            long end = ends[i];
+
+            byte[] bytes = new byte[(int) Math.max(0, end - start)];
+            int len = 0;
+
+            for (long pos = start; pos < end; pos++) {
+                MappedByteBuffer region = regions.get((int) (pos / REGION));
+                byte b = region.get((int) (pos % REGION));
+                if (b > ' ') {
+                    bytes[len++] = b;
+                }
+            }
+
+            return new String(bytes, 0, len, StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * Records an entry.
+         *
+         * @param id
+         * @param start
+         * @param end
+         */
+        private void add(String id, long start, long end) {
+
+            int i = ids.size();
+            if (i == starts.length) {
+                starts = Arrays.copyOf(starts, i * 2);
+                ends = Arrays.copyOf(ends, i * 2);
+            }
+
+            ids.add(id);
+            starts[i] = Math.min(start, end);
+            ends[i] = end;
+        }
+    }
+
+    /** Filter applied to each header id. */
+    private final Predicate<String> filter;
+
+    /** Receiver of accepted records. */
+    private final Handler handler;
+
+    /** Bytes of the current header id. */
+    private byte[] id = new byte[64];
+    private int idLen;
+
+    /** Bytes of the current sequence. */
+    private byte[] seq = new byte[4096];
+    private int seqLen;
+
+    /** Current record id, or null before the first header. */
+    private String current;
+
+    /** True if the current record passed the filter. */
+    private boolean keep;
+
+    /** True while reading a header line. */
+    private boolean inHeader;
+
+    /** True while the header id is still being read. */
+    private boolean inId;
+
+    /** True at the start of a line. */
+    private boolean lineStart = true;
+
+    /** Entries being indexed, or null when reading records. */
+    private final Entries entries;
+
+    /** Position in the file of the byte being scanned. */
+    private long offset;
+
+    /** Position in the file where the current sequence starts. */
+    private long seqStart;
+
+    private FastaReader(Predicate<String> filter, Handler handler,
+            Entries entries) {
+        this.filter = filter;
+        this.handler = handler;
+        this.entries = entries;
+    }
+
+    /**
+     * Reads every record of a FASTA file, passing those whose header id is
+     * accepted by the filter to the handler.
+     *
+     * @param path FASTA file
+     * @param filter header id filter
+     * @param handler receiver of accepted records
+     * @throws IOException
+     */
+    public static void read(String path, Predicate<String> filter,
+            Handler handler) throws IOException {
+
+        new FastaReader(filter, handler, null).scan(path);
+    }
+
+    /**
+     * Indexes the header ids and sequence positions of a FASTA file without
+     * copying any sequence, so entries can be selected later.
+     *
+     * @param path FASTA file
+     * @return entries
+     * @throws IOException
+     */
+    public static Entries index(String path) throws IOException {
+
+        Entries entries = new Entries();
+        new FastaReader(id -> false, null, entries).scan(path);
+
+        return entries;
+    }
+
+    /**
+     * Maps and scans a file region by region.
+     *
+     * @param path
+     * @throws IOException
+     */
+    private void scan(String path) throws IOException {
+
+        try (FileInputStream in = new FileInputStream(path);
+                FileChannel channel = in.getChannel()) {
+
+            long size = channel.size();
+
+            /** Map the file region by region. */
+            for (long pos = 0; pos < size; pos += REGION) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException(path
+                            + ", read interrupted");
+                }
+                long len = Math.min(REGION, size - pos);
+                MappedByteBuffer buffer = channel.map(
+                        FileChannel.MapMode.READ_ONLY, pos, len);
+                if (entries != null) {
+                    entries.regions.add(buffer);
+                }
+                scan(buffer, pos);
+            }
+
+            offset = size;
+        }
+
+        endRecord();
+    }
+
+    /**
+     * Scans a mapped region. State carries over between regions, so records
+     * may span region boundaries.
+     *
+     * @param buffer
+     * @param base position of the region in the file
+     */
+    private void scan(MappedByteBuffer buffer, long base) {
+
+        while (buffer.hasRemaining()) {
+            offset = base + buffer.position();
+            byte b = buffer.get();
+
+            if (b == '\n' || b == '\r') {
+                if (inHeader) {
+                    startRecord();
+                }
+                lineStart = true;
+                continue;
+            }
+
+            if (lineStart && b == '>') {
+                endRecord();
+                inHeader = true;
+                inId = true;
+                idLen = 0;
+                lineStart = false;
+                continue;
+            }
+            lineStart = false;
+
+            if (inHeader) {
+
+                /** Header id ends at the first whitespace. */
+                if (inId) {
+                    if (b == ' ' || b == '\t') {
+                        inId = false;
+                    } else {
+                        if (idLen == id.length) {
+                            id = Arrays.copyOf(id, idLen * 2);
+                        }
+                        id[idLen++] = b;
+                    }
+                }
+            } else if (keep && b > ' ') {
+                if (seqLen == seq.length) {
+                    seq = Arrays.copyOf(seq, seqLen * 2);
+                }
+                seq[seqLen++] = b;
+            }
+        }
+    }
+
+    /**
+     * Completes the header line and decides whether to keep the record.
+     */
+    private void startRecord() {
+        inHeader = false;
+        current = new String(id, 0, idLen, StandardCharsets.US_ASCII);
+        keep = filter.test(current);
+        seqLen = 0;
+        seqStart = offset + 1;
+    }
+
+    /**
+     * Emits the current record if it was kept.
+     */
+    private void endRecord() {
+
+        /** Header without a line break at end of file. */
+        if (inHeader) {
+            startRecord();
+        }
+
+        if (current != null && entries != null) {
+            entries.add(current, seqStart, offset);
+        }
+
+        if (current != null && keep) {
+            handler.record(current,
+                    new String(seq, 0, seqLen, StandardCharsets.US_ASCII));
+        }
+
+        current = null;
+        keep = false;
+    }
+}
@@ -6,6 +6,7 @@
 package javaapplication4;
 
 import static java.lang.System.exit;
+import java.util.Arrays;
 /**
  *
  * @author James E Johnson jj@umn.edu
@@ -17,8 +18,52 @@ public class JavaApplication4 {
      */
     public static void main(String[] args) {
         // TODO code application logic here        i
+        if (args.length > 1 && "index".equals(args[0])) {
+            boolean built = KinaMineDriver.index(
+                    Arrays.copyOfRange(args, 1, args.length));
+            exit(built ? 0 : 1);
+        }
+        if (args.length > 1 && "seqindex".equals(args[0])) {
+            boolean built = KinaMineDriver.seqIndex(
+                    Arrays.copyOfRange(args, 1, args.length));
+            exit(built ? 0 : 1);
+        }
+        if (args.length > 4 && "batch".equals(args[0])) {
+            boolean done = KinaMineDriver.batch(
+                    Arrays.copyOfRange(args, 1, args.length));
+            exit(done ? 0 : 1);
+        }
+        if (args.length > 0 && "serve".equals(args[0])) {
+            if (!KinaMineServer.serve(
+                    Arrays.copyOfRange(args, 1, args.length))) {
+                exit(1);
+            }
+            return;
+        }
+        if (args.length > 5 && "client".equals(args[0])) {
+            boolean done = KinaMineServer.submit(
+                    Arrays.copyOfRange(args, 1, args.length));
+            exit(done ? 0 : 1);
+        }
+        if (args.length > 3 && "generate".equals(args[0])) {
+            boolean written = Workload.generate(
+                    Arrays.copyOfRange(args, 1, args.length));
+            exit(written ? 0 : 1);
+        }
+        if (args.length > 1 && "scale".equals(args[0])) {
+            boolean passed = ScaleHarness.run(
+                    Arrays.copyOfRange(args, 1, args.length));
+            exit(passed ? 0 : 1);
+        }
         if (args.length < 5) {
-            System.err.print("usage: mkdir -p outputs && java -Djava.awt.headless=true -jar 'JavaApplication4.jar' 'psm_phos' reference.fasta outputs 0.5 output");
+            System.err.print("usage: mkdir -p outputs && java -Djava.awt.headless=true -jar 'JavaApplication4.jar' 'psm_phos' reference.fasta outputs 0.5 output [--gzip] [--long] [--mod=NAME:RESIDUES] [--protein-pilot] [--window=N] [--context] [--rescue] [--positions] [--resamples=N [--bootstrap] [--seed=N]] [--negatives[=referenced|proteome]] [--snapshot=PATH [--append]]\n"
+                    + "       java -jar 'JavaApplication4.jar' index reference.fasta [reference.fasta.kmi]\n"
+                    + "       java -jar 'JavaApplication4.jar' seqindex reference.fasta [reference.fasta.kms]\n"
+                    + "       java -jar 'JavaApplication4.jar' batch manifest.tsv reference.fasta outputs 0.5 [--threads=N] [--gzip] [--long]\n"
+                    + "       java -jar 'JavaApplication4.jar' serve [reference.fasta ...] [--port=N] [--threads=N] [--job-memory=MB]\n"
+                    + "       java -jar 'JavaApplication4.jar' client 'psm_phos' reference.fasta outputs 0.5 output [--port=N] [--gzip] [--long]\n"
+                    + "       java -jar 'JavaApplication4.jar' generate prefix proteins peptides [--seed=N]\n"
+                    + "       java -jar 'JavaApplication4.jar' scale workdir [--ladder=PxM,...] [--seed=N] [--golden=DIR] [--record]");
             exit(1);
         }
         KinaMineDriver.run(args, true);
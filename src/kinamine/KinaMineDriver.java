@@ -10,10 +10,15 @@
 package javaapplication4;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Driver class for KinaMine. Processes arguments collected from GUI.
@@ -25,7 +30,9 @@ public class KinaMineDriver {
 
     /**
      * Main run method for KinaMine. Processes arguments and stores file
-     * contents for compiling a run.
+     * contents for compiling a run. The database is loaded concurrently with
+     * the peptide report, and motifs are generated while the referenced
+     * proteins are extracted.
      *
      * @param args
      * @param debug
@@ -40,31 +47,357 @@ public class KinaMineDriver {
         String outPath = args[2];
         double fdrScore = 0.5;
         String outGroup = "/" + args[4];
+        RunOptions options = RunOptions.parse(args);
+
+        boolean isFasta = fastaPath.contains("fasta");
+
+        ExecutorService pool = Executors.newCachedThreadPool();
+
+        try {
+
+            Run run = new Run(options);
+
+            /** Restore the run the new rows are appended to. */
+            if (!restoreSnapshot(run, options, fastaPath)) {
+                return false;
+            }
+
+            /**
+             * Load the database while the peptide report is read. An
+             * appended run only extracts the accessions added since its
+             * snapshot, so it streams them from the FASTA instead unless the
+             * whole proteome is scanned.
+             */
+            boolean whole = !options.append || options.positions
+                    || "proteome".equals(options.negatives);
+            Future<ProteinSource> proteome = null;
+            if (isFasta && whole) {
+                proteome = pool.submit(() -> {
+                    RunMetrics.Stage stage = run.metrics.start("readFasta");
+                    ProteinSource loaded = loadProteome(fastaPath);
+                    stage.stop();
+                    return loaded;
+                });
+            }
+
+            /** Load the sequence index while the report is read too. */
+            Future<SequenceIndex> sequences = null;
+            if (options.rescue && isFasta) {
+                sequences = pool.submit(() -> {
+                    RunMetrics.Stage stage
+                            = run.metrics.start("readSequences");
+                    SequenceIndex loaded = loadSequences(fastaPath);
+                    stage.stop();
+                    return loaded;
+                });
+            } else if (options.rescue) {
+                System.out.println(fastaPath
+                        + ", is not a FASTA database, no peptides rescued");
+            }
+
+            /** Read peptide report. */
+            try (ReportReader peptides = ReportReader.open(pepPath)) {
+                run.extractPeptides(peptides, fdrScore);
+            }
+
+            /** Find the proteins of peptides without accessions. */
+            if (sequences != null) {
+                run.rescuePeptides(sequences.get());
+            }
+
+            /** Generate motifs while the database is extracted. */
+            Future<?> motifs = pool.submit(run::generateMotifs);
+
+            if (proteome != null) {
+                run.extractDatabase(proteome.get());
+            } else {
+                run.extractDatabase(fastaPath);
+            }
+
+            motifs.get();
+            run.markMods();
+            run.extendMotifs();
+            if (options.positions) {
+                run.countWindows(proteome != null ? proteome.get() : null);
+            }
+            if (options.resamples > 0) {
+                run.scoreEnrichment(options.resamples, options.bootstrap,
+                        options.seed);
+            }
+            if (options.negatives != null) {
+                run.findNegatives(negativeSource(options, fastaPath,
+                        proteome != null ? proteome.get() : null));
+            }
+
+            if (options.snapshot != null) {
+                RunSnapshot.write(run, options, fastaPath, options.snapshot);
+            }
+
+            /** Write run reports. */
+            Reporter.writeReports(run, outPath, outGroup, options);
+
+        } catch (FileNotFoundException filenotfoundexxption) {
+            System.out.println(pepPath + ", does not exist");
+            return false;
+        } catch (ExecutionException executionexception) {
+            if (executionexception.getCause()
+                    instanceof FileNotFoundException) {
+                System.out.println(fastaPath + ", does not exist");
+            } else {
+                executionexception.printStackTrace();
+            }
+            return false;
+        } catch (IOException | InterruptedException exception) {
+            exception.printStackTrace();
+            return false;
+        } finally {
+            /** On success every task is done, on failure stop the loads
+             * still running rather than let them finish. */
+            pool.shutdownNow();
+        }
+
+        return true;
+    }
+
+    /**
+     * Restores the snapshot of the run the new rows are appended to, if the
+     * options append to one.
+     *
+     * @param run empty run
+     * @param options
+     * @param dbPath
+     * @return false if the snapshot is missing or does not match the run
+     * @throws IOException
+     */
+    private static boolean restoreSnapshot(Run run, RunOptions options,
+            String dbPath) throws IOException {
+
+        if (!options.append) {
+            return true;
+        }
+
+        if (options.snapshot == null) {
+            System.out.println("--append, needs --snapshot=PATH");
+            return false;
+        }
+        if (!new File(options.snapshot).exists()) {
+            System.out.println(options.snapshot + ", does not exist");
+            return false;
+        }
+
+        return RunSnapshot.restore(run, options, dbPath, options.snapshot);
+    }
+
+    /**
+     * Returns the database searched for negative motifs: the loaded
+     * database if every protein is searched, or null for the referenced
+     * proteins.
+     *
+     * @param options
+     * @param dbPath
+     * @param proteome loaded database, or null
+     * @return database to search, or null
+     */
+    private static ProteinSource negativeSource(RunOptions options,
+            String dbPath, ProteinSource proteome) {
+
+        if (!"proteome".equals(options.negatives)) {
+            return null;
+        }
+
+        if (proteome == null) {
+            System.out.println(dbPath + ", is not a FASTA database, "
+                    + "negatives of the referenced proteins only");
+        }
+
+        return proteome;
+    }
+
+    /**
+     * Batch run method for KinaMine. Processes every peptide report listed in
+     * a manifest against one database, which is loaded and indexed once.
+     * Reports are processed concurrently by a bounded pool of workers, each
+     * with its own run and output group.
+     * <p>
+     * Manifest lines are the report path and output group, separated by a
+     * tab. Blank lines and lines starting with '#' are ignored.
+     *
+     * @param args manifest, database, output path, FDR and options
+     * @return true if every report was processed
+     */
+    public static boolean batch(String[] args) {
+
+        /** Process arguments. */
+        String manifestPath = args[0];
+        String fastaPath = args[1];
+        String outPath = args[2];
+        double fdrScore = 0.5;
+        RunOptions options = RunOptions.parse(args, 4);
+
+        /** Reports of a batch cannot share one snapshot. */
+        if (options.snapshot != null || options.append) {
+            System.out.println("--snapshot and --append, not supported in "
+                    + "batch mode");
+            return false;
+        }
+
+        ArrayList<String> lines = retTabFile(manifestPath);
+
+        /** Load the database once for every report. */
+        ProteinSource proteome = null;
+        SequenceIndex sequences = null;
+        if (fastaPath.contains("fasta")) {
+            try {
+                proteome = loadProteome(fastaPath);
+                if (options.rescue) {
+                    sequences = loadSequences(fastaPath);
+                }
+            } catch (FileNotFoundException filenotfoundexxption) {
+                System.out.println(fastaPath + ", does not exist");
+                return false;
+            } catch (IOException ioexception) {
+                ioexception.printStackTrace();
+                return false;
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(options.threads);
+        ArrayList<Future<Boolean>> jobs = new ArrayList<>();
+        boolean success = true;
+
+        try {
+
+            for (String line : lines) {
+
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] job = line.split("\t");
+                if (job.length < 2) {
+                    System.out.println(line + ", invalid manifest line");
+                    success = false;
+                    continue;
+                }
+
+                ProteinSource database = proteome;
+                SequenceIndex index = sequences;
+                jobs.add(pool.submit(() -> runJob(job[0].trim(), database,
+                        index, fastaPath, outPath, "/" + job[1].trim(),
+                        fdrScore, options)));
+            }
+
+            for (Future<Boolean> job : jobs) {
+                success &= job.get();
+            }
+
+        } catch (InterruptedException | ExecutionException exception) {
+            exception.printStackTrace();
+            return false;
+        } finally {
+            pool.shutdown();
+        }
+
+        return success;
+    }
+
+    /**
+     * Processes one peptide report of a batch.
+     *
+     * @param pepPath peptide report
+     * @param proteome loaded database, or null to read dbPath
+     * @param sequences loaded sequence index, or null to load it from dbPath
+     * when peptides are rescued
+     * @param dbPath database path
+     * @param outPath
+     * @param outGroup
+     * @param fdrScore
+     * @param options
+     * @return true if the reports were written
+     */
+    static boolean runJob(String pepPath, ProteinSource proteome,
+            SequenceIndex sequences, String dbPath, String outPath,
+            String outGroup, double fdrScore, RunOptions options) {
+
+        Run run = new Run(options);
+
+        /** Restore the run the new rows are appended to. */
+        try {
+            if (!restoreSnapshot(run, options, dbPath)) {
+                return false;
+            }
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return false;
+        }
 
         /** Read peptide report. */
-        ArrayList<String> peptides = retTabFile(pepPath);
-        peptides.remove(0);
-
-        ArrayList<String> proteins = new ArrayList<>();
-        
-        /** Read fasta database */
-        if (fastaPath.contains("fasta")){
-            proteins = retFastaFile(fastaPath);
+        try (ReportReader peptides = ReportReader.open(pepPath)) {
+            run.extractPeptides(peptides, fdrScore);
+        } catch (FileNotFoundException filenotfoundexxption) {
+            System.out.println(pepPath + ", does not exist");
+            return false;
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return false;
+        }
+
+        /** Find the proteins of peptides without accessions. */
+        if (options.rescue) {
+            if (sequences == null && dbPath.contains("fasta")) {
+                try {
+                    sequences = loadSequences(dbPath);
+                } catch (FileNotFoundException filenotfoundexxption) {
+                    System.out.println(dbPath + ", does not exist");
+                    return false;
+                } catch (IOException ioexception) {
+                    ioexception.printStackTrace();
+                    return false;
+                }
+            }
+            if (sequences != null) {
+                run.rescuePeptides(sequences);
+            } else {
+                System.out.println(dbPath
+                        + ", is not a FASTA database, no peptides rescued");
+            }
+        }
+
+        /** Extract the proteins and generate motifs. */
+        if (proteome != null) {
+            run.extractDatabase(proteome);
         } else {
-            proteins = retTabFile(fastaPath);
+            run.extractDatabase(dbPath);
+        }
+        run.generateMotifs();
+        run.markMods();
+        run.extendMotifs();
+        if (options.positions) {
+            run.countWindows(proteome);
+        }
+        if (options.resamples > 0) {
+            run.scoreEnrichment(options.resamples, options.bootstrap,
+                    options.seed);
+        }
+        if (options.negatives != null) {
+            run.findNegatives(negativeSource(options, dbPath, proteome));
         }
-        
 
-        /** Create new run. */
-        Run run = new Run(peptides, proteins, fdrScore);
+        if (options.snapshot != null) {
+            try {
+                RunSnapshot.write(run, options, dbPath, options.snapshot);
+            } catch (IOException ioexception) {
+                ioexception.printStackTrace();
+                return false;
+            }
+        }
 
         /** Write run reports. */
-        Reporter.writeReports(run, outPath, outGroup);
+        Reporter.writeReports(run, outPath, outGroup, options);
 
         return true;
     }
 
-    
     /**
      * Reads tabular files.
      *
@@ -113,6 +446,13 @@ public class KinaMineDriver {
         return lines;
     }
 
+    /**
+     * Reads a FASTA file into one tabular line per entry, formatted as
+     * header, blank and sequence.
+     *
+     * @param path
+     * @return Arraylist of entries.
+     */
     public static ArrayList<String> retFastaFile(String path) {
 
         /** Initialize lines */
@@ -120,27 +460,8 @@ public class KinaMineDriver {
 
         try {
 
-            /** Configure reader. */
-            FileReader fr = new FileReader(path);
-            BufferedReader br = new BufferedReader(fr);
-
-            String line = br.readLine();
-            String prot = "";
-
-            while (line != null) {
-                
-                if (line.startsWith(">")){
-                    String[] temp = line.split(" ");
-                    prot = temp[0].trim() + "\t \t";
-                } else {
-                    prot +=  line.trim();
-                    lines.add(prot);
-                }
-                
-                line = br.readLine();
-            }
-
-            br.close();
+            FastaReader.read(path, id -> true,
+                    (id, seq) -> lines.add(">" + id + "\t \t" + seq));
 
         } catch (FileNotFoundException filenotfoundexxption) {
             System.out.println(path + ", does not exist");
@@ -151,6 +472,94 @@ public class KinaMineDriver {
         return lines;
     }
     
+    /**
+     * Loads a FASTA database, using its pre-parsed proteome index if valid
+     * and indexing the FASTA entries otherwise.
+     *
+     * @param fastaPath
+     * @return loaded database
+     * @throws IOException
+     */
+    public static ProteinSource loadProteome(String fastaPath)
+            throws IOException {
+
+        ProteomeIndex proteome = ProteomeIndex.find(fastaPath);
+        if (proteome != null) {
+            return proteome;
+        }
+
+        return FastaReader.index(fastaPath);
+    }
+
+    /**
+     * Loads the sequence index of a FASTA database, building it in memory
+     * if no valid index was written next to the FASTA.
+     *
+     * @param fastaPath
+     * @return sequence index
+     * @throws IOException
+     */
+    public static SequenceIndex loadSequences(String fastaPath)
+            throws IOException {
+
+        SequenceIndex sequences = SequenceIndex.find(fastaPath);
+        if (sequences != null) {
+            return sequences;
+        }
+
+        return SequenceIndex.build(fastaPath);
+    }
+
+    /**
+     * Builds the sequence index of a FASTA database.
+     *
+     * @param args fasta path and optional index path
+     * @return
+     */
+    public static boolean seqIndex(String[] args) {
+
+        String fastaPath = args[0];
+        String indexPath = args.length > 1
+                ? args[1] : fastaPath + SequenceIndex.EXTENSION;
+
+        try {
+            SequenceIndex.build(fastaPath).write(indexPath);
+        } catch (FileNotFoundException filenotfoundexxption) {
+            System.out.println(fastaPath + ", does not exist");
+            return false;
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds the proteome index of a FASTA database.
+     *
+     * @param args fasta path and optional index path
+     * @return
+     */
+    public static boolean index(String[] args) {
+
+        String fastaPath = args[0];
+        String indexPath = args.length > 1
+                ? args[1] : fastaPath + ProteomeIndex.EXTENSION;
+
+        try {
+            ProteomeIndex.build(fastaPath, indexPath);
+        } catch (FileNotFoundException filenotfoundexxption) {
+            System.out.println(fastaPath + ", does not exist");
+            return false;
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return false;
+        }
+
+        return true;
+    }
+
     public static void main(String[] args) {
         KinaMineDriver.run(args, true);
     }
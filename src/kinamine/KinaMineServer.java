@@ -0,0 +1,484 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Resident KinaMine service. Keeps reference databases loaded and runs jobs
+ * submitted over a local HTTP endpoint, so each job only pays for its own
+ * peptide report and motifs.
+ * <p>
+ * POST /run takes the form fields report, fasta, out and group (and gzip,
+ * long, mod, proteinPilot, window, context, rescue, positions, resamples,
+ * bootstrap, seed, negatives, snapshot, append), and answers once the
+ * reports are written.
+ * There is no FDR field: like a plain run, jobs use the fixed score
+ * threshold. GET /status lists the loaded references. A reference is
+ * reloaded when its file changes. Loaded references are copied into a packed
+ * store, so jobs still running on the old copy never read the changed file.
+ * <p>
+ * The memory a job needs is estimated from the size of its report alone,
+ * by a fixed factor that has not been measured across report formats. The
+ * per-job cap and the shared heap budget are therefore approximate
+ * admission checks, not limits.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class KinaMineServer {
+
+    /** Rough bytes of heap used per byte of peptide report. */
+    private static final long REPORT_FACTOR = 6;
+
+    /** Milliseconds to wait for the service to accept a connection. */
+    private static final int CONNECT_TIMEOUT = 2000;
+
+    /** Bytes per MB. */
+    private static final long MB = 1 << 20;
+
+    /** Options of the service. */
+    private final RunOptions options;
+
+    /** Loaded references by canonical path. */
+    private final Map<String, Reference> references = new ConcurrentHashMap<>();
+
+    /** Heap budget of running jobs, in MB. */
+    private final Semaphore memory;
+    private final int budget;
+
+    /**
+     * Reference database loaded from a file, with the file state it was
+     * loaded from.
+     */
+    private static final class Reference {
+
+        final ProteinSource proteome;
+
+        final long length;
+
+        final long modified;
+
+        /** Sequence index, loaded by the first job rescuing peptides. */
+        SequenceIndex sequences;
+
+        Reference(ProteinSource proteome, File file) {
+            this.proteome = proteome;
+            this.length = file.length();
+            this.modified = file.lastModified();
+        }
+
+        boolean isCurrent(File file) {
+            return file.length() == length && file.lastModified() == modified;
+        }
+
+        synchronized SequenceIndex sequences(String path) throws IOException {
+            if (sequences == null) {
+                sequences = KinaMineDriver.loadSequences(path);
+            }
+            return sequences;
+        }
+    }
+
+    private KinaMineServer(RunOptions options) {
+        this.options = options;
+        this.budget = (int) Math.max(1,
+                Runtime.getRuntime().maxMemory() / MB * 3 / 4);
+        this.memory = new Semaphore(budget, true);
+    }
+
+    /**
+     * Starts the service, preloading the given references.
+     *
+     * @param args reference paths followed by options
+     * @return false if the service could not start
+     */
+    public static boolean serve(String[] args) {
+
+        int first = 0;
+        while (first < args.length && !args[first].startsWith("--")) {
+            first++;
+        }
+
+        KinaMineServer server
+                = new KinaMineServer(RunOptions.parse(args, first));
+
+        try {
+
+            /** Load the references before accepting jobs. */
+            for (int i = 0; i < first; i++) {
+                server.reference(args[i]);
+            }
+
+            HttpServer http = HttpServer.create(new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), server.options.port), 0);
+            http.createContext("/run", server::run);
+            http.createContext("/status", server::status);
+            http.setExecutor(
+                    Executors.newFixedThreadPool(server.options.threads));
+            http.start();
+
+        } catch (FileNotFoundException filenotfoundexxption) {
+            System.out.println(filenotfoundexxption.getMessage()
+                    + ", does not exist");
+            return false;
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return false;
+        }
+
+        System.out.println("KinaMine service on port " + server.options.port);
+
+        return true;
+    }
+
+    /**
+     * Returns the loaded reference of a database path, loading it if absent
+     * or if the file changed since it was loaded.
+     *
+     * @param path
+     * @return loaded reference
+     * @throws IOException
+     */
+    private Reference reference(String path) throws IOException {
+
+        File file = new File(path);
+        if (!file.exists()) {
+            throw new FileNotFoundException(path);
+        }
+
+        String key = file.getCanonicalPath();
+        Reference reference = references.get(key);
+
+        if (reference == null || !reference.isCurrent(file)) {
+            synchronized (this) {
+                reference = references.get(key);
+                if (reference == null || !reference.isCurrent(file)) {
+                    reference = new Reference(PackedProteome.copy(
+                            KinaMineDriver.loadProteome(key)), file);
+                    references.put(key, reference);
+                    System.out.println("Loaded " + key);
+                }
+            }
+        }
+
+        return reference;
+    }
+
+    /**
+     * Handles a job: runs the report against its reference and answers once
+     * the reports are written.
+     *
+     * @param exchange
+     * @throws IOException
+     */
+    private void run(HttpExchange exchange) throws IOException {
+
+        Map<String, String> params = params(exchange);
+
+        String report = params.get("report");
+        String fasta = params.get("fasta");
+        String out = params.get("out");
+        String group = params.get("group");
+
+        if (report == null || fasta == null || out == null || group == null) {
+            respond(exchange, 400, "report, fasta, out and group are required");
+            return;
+        }
+
+        RunOptions job = new RunOptions();
+        job.gzip = "true".equals(params.get("gzip"));
+        job.longFreq = "true".equals(params.get("long"));
+        job.mod = params.get("mod");
+        job.proteinPilot = "true".equals(params.get("proteinPilot"));
+        job.context = "true".equals(params.get("context"));
+        job.rescue = "true".equals(params.get("rescue"));
+        job.positions = "true".equals(params.get("positions"));
+        job.bootstrap = "true".equals(params.get("bootstrap"));
+        job.negatives = params.get("negatives");
+        job.snapshot = params.get("snapshot");
+        job.append = "true".equals(params.get("append"));
+        String field = "resamples";
+        try {
+            if (params.get("resamples") != null) {
+                job.resamples = Math.max(0,
+                        Integer.parseInt(params.get("resamples")));
+            }
+            field = "seed";
+            if (params.get("seed") != null) {
+                job.seed = Long.parseLong(params.get("seed"));
+            }
+            field = "window";
+            if (params.get("window") != null) {
+                job.window = Math.max(1,
+                        Integer.parseInt(params.get("window")));
+            }
+        } catch (NumberFormatException numberformatexception) {
+            respond(exchange, 400, field + "=" + params.get(field)
+                    + ", invalid value");
+            return;
+        }
+
+        /** Check the rough estimate of the job against the per-job cap. */
+        int needed = (int) (new File(report).length() * REPORT_FACTOR / MB) + 1;
+        if (options.jobMemory > 0 && needed > options.jobMemory) {
+            respond(exchange, 413, report + " needs about " + needed
+                    + " MB, over the per-job cap of " + options.jobMemory);
+            return;
+        }
+
+        int permits = Math.min(needed, budget);
+
+        try {
+
+            ProteinSource proteome = null;
+            SequenceIndex sequences = null;
+            if (fasta.contains("fasta")) {
+                Reference reference = reference(fasta);
+                proteome = reference.proteome;
+                if (job.rescue) {
+                    sequences = reference.sequences(fasta);
+                }
+            }
+
+            /** Wait until the job fits in the heap budget. */
+            memory.acquire(permits);
+
+            boolean done;
+            try {
+                done = KinaMineDriver.runJob(report, proteome, sequences,
+                        fasta, out, "/" + group, 0.5, job);
+            } finally {
+                memory.release(permits);
+            }
+
+            if (done) {
+                respond(exchange, 200, "done");
+            } else {
+                respond(exchange, 500, report + ", failed");
+            }
+
+        } catch (FileNotFoundException filenotfoundexxption) {
+            respond(exchange, 404, filenotfoundexxption.getMessage()
+                    + ", does not exist");
+        } catch (InterruptedException interruptedexception) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "interrupted");
+        } catch (IOException | RuntimeException exception) {
+            exception.printStackTrace();
+            respond(exchange, 500, String.valueOf(exception));
+        }
+    }
+
+    /**
+     * Lists the loaded references.
+     *
+     * @param exchange
+     * @throws IOException
+     */
+    private void status(HttpExchange exchange) throws IOException {
+
+        StringBuilder status = new StringBuilder();
+        for (Map.Entry<String, Reference> entry : references.entrySet()) {
+            status.append(entry.getKey()).append('\t')
+                    .append(entry.getValue().proteome.size()).append('\n');
+        }
+
+        respond(exchange, 200, status.toString());
+    }
+
+    /**
+     * Parses the query string and form body of a request.
+     *
+     * @param exchange
+     * @return parameters
+     * @throws IOException
+     */
+    private static Map<String, String> params(HttpExchange exchange)
+            throws IOException {
+
+        Map<String, String> params = new HashMap<>();
+        decode(exchange.getRequestURI().getRawQuery(), params);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+        }
+        decode(new String(body.toByteArray(), StandardCharsets.UTF_8), params);
+
+        return params;
+    }
+
+    /**
+     * Decodes form-encoded parameters.
+     *
+     * @param form
+     * @param params
+     * @throws UnsupportedEncodingException
+     */
+    private static void decode(String form, Map<String, String> params)
+            throws UnsupportedEncodingException {
+
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+    }
+
+    /**
+     * Sends a plain text response.
+     *
+     * @param exchange
+     * @param code
+     * @param message
+     * @throws IOException
+     */
+    private static void respond(HttpExchange exchange, int code,
+            String message) throws IOException {
+
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Thin client of the service. Takes the same arguments as a run, submits
+     * them to the local service and waits for the reports. If no service
+     * accepts the connection, the run is processed in this JVM instead. The
+     * FDR argument is not sent, as a plain run does not use it either.
+     *
+     * @param args
+     * @return true if the reports were written
+     */
+    public static boolean submit(String[] args) {
+
+        RunOptions options = RunOptions.parse(args);
+
+        try {
+
+            String form = "report=" + encode(args[0])
+                    + "&fasta=" + encode(args[1])
+                    + "&out=" + encode(args[2])
+                    + "&group=" + URLEncoder.encode(args[4], "UTF-8")
+                    + "&gzip=" + options.gzip
+                    + "&long=" + options.longFreq
+                    + "&proteinPilot=" + options.proteinPilot
+                    + "&window=" + options.window
+                    + "&context=" + options.context
+                    + "&rescue=" + options.rescue
+                    + "&positions=" + options.positions
+                    + "&resamples=" + options.resamples
+                    + "&bootstrap=" + options.bootstrap
+                    + "&seed=" + options.seed
+                    + (options.negatives == null ? "" : "&negatives="
+                            + options.negatives)
+                    + (options.snapshot == null ? "" : "&snapshot="
+                            + encode(options.snapshot))
+                    + "&append=" + options.append
+                    + (options.mod == null ? "" : "&mod="
+                            + URLEncoder.encode(options.mod, "UTF-8"));
+
+            URL url = new URL("http", InetAddress.getLoopbackAddress()
+                    .getHostAddress(), options.port, "/run");
+            HttpURLConnection connection
+                    = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type",
+                    "application/x-www-form-urlencoded");
+
+            /** Run locally when no service is listening. */
+            try {
+                connection.connect();
+            } catch (ConnectException | SocketTimeoutException exception) {
+                System.out.println(
+                        "KinaMine service not running, running locally");
+                return KinaMineDriver.run(args, true);
+            }
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(form.getBytes(StandardCharsets.UTF_8));
+            }
+
+            int code = connection.getResponseCode();
+            InputStream in = code == 200
+                    ? connection.getInputStream() : connection.getErrorStream();
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            if (in != null) {
+                try (InputStream body = in) {
+                    byte[] buffer = new byte[4096];
+                    int n;
+                    while ((n = body.read(buffer)) > 0) {
+                        response.write(buffer, 0, n);
+                    }
+                }
+            }
+            System.out.print(new String(response.toByteArray(),
+                    StandardCharsets.UTF_8));
+
+            return code == 200;
+
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Encodes a path as an absolute path form value.
+     *
+     * @param path
+     * @return encoded path
+     * @throws UnsupportedEncodingException
+     */
+    private static String encode(String path)
+            throws UnsupportedEncodingException {
+        return URLEncoder.encode(new File(path).getAbsolutePath(), "UTF-8");
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass parser of modification strings. Extracts the site positions of
+ * one modification on a set of residues, in either syntax:
+ * <p>
+ * PeptideShaker: Oxidation of M(1), Phosphorylation of Y(3, 9)
+ * <p>
+ * ProteinPilot: Oxidation(M)@1; Phospho(Y)@3; Phospho(Y)@9
+ * <p>
+ * Positions are returned as int arrays, in order of appearance, without any
+ * intermediate Strings. A group left open at the end of the string is
+ * ignored.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class ModParser {
+
+    /** Phospho-tyrosine in PeptideShaker syntax. */
+    public static final ModParser PHOSPHO_Y
+            = new ModParser("Phosphorylation", "Y", false);
+
+    /** Default modification name in ProteinPilot syntax. */
+    public static final String PROTEIN_PILOT_PHOSPHO = "Phospho";
+
+    /** Result without sites. */
+    private static final int[] NONE = new int[0];
+
+    /** Modification name. */
+    private final String name;
+
+    /** Modified residues. */
+    private final String residues;
+
+    /** True for ProteinPilot syntax. */
+    private final boolean proteinPilot;
+
+    /** Text marking a site of each residue, used to test rows. */
+    private final String[] markers;
+
+    /**
+     * Constructs a parser for one modification.
+     *
+     * @param name modification name, such as Phosphorylation
+     * @param residues modified residues, such as STY
+     * @param proteinPilot true for ProteinPilot syntax
+     */
+    public ModParser(String name, String residues, boolean proteinPilot) {
+
+        this.name = name;
+        this.residues = residues;
+        this.proteinPilot = proteinPilot;
+
+        this.markers = new String[residues.length()];
+        for (int i = 0; i < markers.length; i++) {
+            char residue = residues.charAt(i);
+            markers[i] = proteinPilot
+                    ? name + "(" + residue + ")@"
+                    : name + " of " + residue + "(";
+        }
+    }
+
+    /**
+     * Returns the text marking a site of each residue. A modification string
+     * has sites only if it contains one of them.
+     *
+     * @return markers
+     */
+    public String[] markers() {
+        return markers.clone();
+    }
+
+    /**
+     * Extracts the site positions from a modification string.
+     *
+     * @param mods
+     * @return positions, in order of appearance
+     */
+    public int[] sites(CharSequence mods) {
+
+        int[] sites = NONE;
+        int count = 0;
+
+        int len = mods.length();
+        int i = 0;
+
+        while (i < len) {
+
+            int next = match(mods, i);
+            if (next < 0) {
+                i++;
+                continue;
+            }
+
+            /** Read the positions of the group. */
+            int first = count;
+            int value = 0;
+            boolean digits = false;
+            boolean closed = false;
+
+            for (i = next; i < len && !closed; i++) {
+
+                char c = mods.charAt(i);
+
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    digits = true;
+                    continue;
+                }
+
+                closed = proteinPilot ? c == ';' : c == ')';
+
+                if (closed || (c == ',' && !proteinPilot)) {
+                    if (digits) {
+                        sites = add(sites, count++, value);
+                    }
+                    value = 0;
+                    digits = false;
+                }
+            }
+
+            /** A ProteinPilot site may end the string. */
+            if (proteinPilot && !closed) {
+                if (digits) {
+                    sites = add(sites, count++, value);
+                }
+                closed = true;
+            }
+
+            if (!closed) {
+                count = first;
+            }
+        }
+
+        return count == sites.length ? sites : Arrays.copyOf(sites, count);
+    }
+
+    /**
+     * Stores a position, growing the array if full.
+     *
+     * @param sites
+     * @param count positions stored
+     * @param value
+     * @return array holding the position
+     */
+    private static int[] add(int[] sites, int count, int value) {
+
+        if (count == sites.length) {
+            sites = Arrays.copyOf(sites, Math.max(4, count * 2));
+        }
+        sites[count] = value;
+
+        return sites;
+    }
+
+    /**
+     * Matches the opening of a group of this modification at a position.
+     *
+     * @param mods
+     * @param i
+     * @return position after the opening, or -1
+     */
+    private int match(CharSequence mods, int i) {
+
+        int len = mods.length();
+        int n = name.length();
+
+        /** name, then " of R(" or "(R)@". */
+        if (i + n + 4 > len || !startsWith(mods, i, name)) {
+            return -1;
+        }
+
+        int j = i + n;
+
+        if (proteinPilot) {
+            if (mods.charAt(j) == '(' && residues.indexOf(mods.charAt(j + 1))
+                    >= 0 && mods.charAt(j + 2) == ')'
+                    && mods.charAt(j + 3) == '@') {
+                return j + 4;
+            }
+            return -1;
+        }
+
+        if (j + 6 <= len && mods.charAt(j) == ' ' && mods.charAt(j + 1) == 'o'
+                && mods.charAt(j + 2) == 'f' && mods.charAt(j + 3) == ' '
+                && residues.indexOf(mods.charAt(j + 4)) >= 0
+                && mods.charAt(j + 5) == '(') {
+            return j + 6;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Determine if a string has a prefix at a position.
+     *
+     * @param s
+     * @param at
+     * @param prefix
+     * @return
+     */
+    private static boolean startsWith(CharSequence s, int at, String prefix) {
+
+        for (int k = 0; k < prefix.length(); k++) {
+            if (s.charAt(at + k) != prefix.charAt(k)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
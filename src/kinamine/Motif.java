@@ -14,8 +14,16 @@
 package javaapplication4;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * Motif around a phospho-tyrosine, with the accessions of the peptides it
+ * was generated from. Accessions are kept as an insertion-ordered set that
+ * is updated in place; the reference string is only produced for reports.
  *
  * @author murra668
  */
@@ -25,17 +33,177 @@ public class Motif {
     
     public int index;
     
-    public String ref;
+    /** References of the first peptide, as reported. */
+    private final String firstRef;
+
+    /** Accessions in insertion order, once parsed from firstRef. */
+    private ArrayList<String> ids;
+
+    /** Accessions, for membership tests. */
+    private HashSet<String> idSet;
+
+    /** True once accessions are added beyond the first peptide. */
+    private boolean extended;
     
     public ArrayList<String> regenSeqs;
+
+    /** Peptide and phospho-tyrosine each accession was added from. */
+    private HashMap<String, Origin> origins;
+
+    /**
+     * Peptide an accession was added from, with the position of the
+     * phospho-tyrosine in it.
+     */
+    static final class Origin {
+
+        final Peptide peptide;
+
+        final int site;
+
+        Origin(Peptide peptide, int site) {
+            this.peptide = peptide;
+            this.site = site;
+        }
+    }
     
     public Motif(String seq, String ref, int index, ArrayList<String> seqs){
         
         this.seq = seq;
-        this.ref = ref;
+        this.firstRef = ref;
         this.index = index;
         this.regenSeqs = seqs;
         
     }
+
+    /**
+     * Determine if an accession is already referenced by this motif.
+     *
+     * @param id
+     * @return
+     */
+    public boolean hasRef(String id) {
+        refs();
+        return idSet.contains(id);
+    }
+
+    /**
+     * Adds accessions to the motif.
+     *
+     * @param newIds accessions not yet referenced
+     */
+    public void addRefs(List<String> newIds) {
+        refs().addAll(newIds);
+        idSet.addAll(newIds);
+        extended = true;
+    }
+
+    /**
+     * Returns the accessions of the motif, in insertion order.
+     *
+     * @return accessions
+     */
+    public List<String> refs() {
+
+        if (ids == null) {
+            ids = parseRef(firstRef);
+            idSet = new HashSet<>(ids);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Formats the reference string of the motif. A motif from a single
+     * peptide keeps that peptide's references; otherwise each accession is
+     * followed by ';'.
+     *
+     * @return reference string
+     */
+    public String ref() {
+
+        if (!extended) {
+            return firstRef;
+        }
+
+        StringBuilder ref = new StringBuilder();
+        for (String id : ids) {
+            ref.append(id).append(';');
+        }
+
+        return ref.toString();
+    }
+
+    /**
+     * Records the peptide that accessions were added from. The first origin
+     * of each accession is kept.
+     *
+     * @param refs
+     * @param peptide
+     * @param site position of the phospho-tyrosine in the peptide
+     */
+    void addOrigin(List<String> refs, Peptide peptide, int site) {
+
+        if (origins == null) {
+            origins = new HashMap<>();
+        }
+
+        Origin origin = new Origin(peptide, site);
+        for (String ref : refs) {
+            origins.putIfAbsent(ref, origin);
+        }
+    }
+
+    /**
+     * Returns the peptide an accession was added from.
+     *
+     * @param ref
+     * @return origin, or null if not recorded
+     */
+    Origin origin(String ref) {
+        return origins == null ? null : origins.get(ref);
+    }
+
+    /**
+     * @return references of the first peptide, as reported
+     */
+    String firstRef() {
+        return firstRef;
+    }
+
+    /**
+     * Returns the accessions added beyond the first peptide, in insertion
+     * order.
+     *
+     * @return accessions
+     */
+    List<String> addedRefs() {
+
+        if (!extended) {
+            return new ArrayList<>();
+        }
+
+        return ids.subList(parseRef(firstRef).size(), ids.size());
+    }
+
+    /**
+     * @return origin of each accession, or null if none is recorded
+     */
+    Map<String, Origin> origins() {
+        return origins;
+    }
+
+    /** Parse the reference string of peptide.
+     *
+     * @param ref
+     * @return
+     */
+    public static ArrayList<String> parseRef(String ref) {
+        List<String> temp = Arrays.asList(ref.split(";"));
+        ArrayList<String> ids = new ArrayList<>();
+        temp.stream().forEach((id) -> {
+            ids.add(id.replace("\"", ""));
+        });
+        return ids;
+    }
     
 }
@@ -0,0 +1,384 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Position-specific enrichment of the substrate motifs of a run against the
+ * tyrosine windows of their proteins. For each position and amino acid, the
+ * frequency among the motifs is compared with its frequency among the
+ * background windows as a log-odds score, and given empirical p-values from
+ * resamples of the background: each resample draws as many windows as there
+ * are motifs, without replacement (permutation) or with replacement
+ * (bootstrap), and counts how often its frequency is at least, and at most,
+ * that of the motifs.
+ * <p>
+ * Windows are held as residue codes in flat byte arrays, and resamples are
+ * counted into primitive arrays. Resamples run in parallel in blocks, each
+ * block with its own stream split in order from the seed, so the scores do
+ * not depend on the number of cores.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class MotifEnrichment {
+
+    /** Resamples per block, each block drawing from its own stream. */
+    private static final int BLOCK = 32;
+
+    /** Code of positions outside the window, or not an amino acid. */
+    private static final int NONE = AminoAcid.ACIDS.length;
+
+    /** Codes per position, including NONE. */
+    private static final int CODES = NONE + 1;
+
+    /** Residues on each side of the tyrosine. */
+    final int window;
+
+    /** Number of motifs and of background windows scored. */
+    final int motifs;
+    final int windows;
+
+    /** Number of resamples, and whether they are drawn with replacement. */
+    final int resamples;
+    final boolean bootstrap;
+
+    /** Count of each code at each position, among the motifs and among the
+     * background windows. */
+    private final long[] observed;
+    private final long[] background;
+
+    /** Number of resamples at least, and at most, as frequent as the
+     * motifs, for each code at each position. */
+    private final long[] above;
+    private final long[] below;
+
+    private MotifEnrichment(int window, int motifs, int windows,
+            int resamples, boolean bootstrap, long[] observed,
+            long[] background, long[] above, long[] below) {
+        this.window = window;
+        this.motifs = motifs;
+        this.windows = windows;
+        this.resamples = resamples;
+        this.bootstrap = bootstrap;
+        this.observed = observed;
+        this.background = background;
+        this.above = above;
+        this.below = below;
+    }
+
+    /**
+     * Scores the tyrosine-centred motifs against the windows of every
+     * tyrosine of the proteins.
+     *
+     * @param motifs motifs of the run
+     * @param proteins proteins found in the database
+     * @param window residues on each side of the tyrosine
+     * @param resamples number of resamples
+     * @param bootstrap draw with replacement
+     * @param seed seed of the resamples
+     * @return scores
+     */
+    public static MotifEnrichment score(Collection<Motif> motifs,
+            Collection<Protein> proteins, int window, int resamples,
+            boolean bootstrap, long seed) {
+
+        int width = 2 * window + 1;
+
+        byte[] sample = motifWindows(motifs, window);
+        byte[] pool = proteinWindows(proteins, window);
+        int n = sample.length / width;
+        int m = pool.length / width;
+
+        long[] observed = counts(sample, width);
+        long[] background = counts(pool, width);
+
+        /** Without replacement, a resample cannot exceed the pool. */
+        int count = m > 0 && (bootstrap || n <= m) ? resamples : 0;
+
+        /** Split a stream for each block in order, then run them. */
+        int blocks = (count + BLOCK - 1) / BLOCK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[blocks];
+        for (int b = 0; b < blocks; b++) {
+            streams[b] = root.split();
+        }
+
+        long[][] tallies = IntStream.range(0, blocks).parallel()
+                .mapToObj(b -> resample(pool, width, n, observed,
+                        Math.min(BLOCK, count - b * BLOCK), bootstrap,
+                        streams[b]))
+                .reduce((x, y) -> {
+                    for (int k = 0; k < x[0].length; k++) {
+                        x[0][k] += y[0][k];
+                        x[1][k] += y[1][k];
+                    }
+                    return x;
+                })
+                .orElse(new long[2][width * CODES]);
+
+        return new MotifEnrichment(window, n, m, count, bootstrap,
+                observed, background, tallies[0], tallies[1]);
+    }
+
+    /**
+     * Draws a block of resamples and tallies how often each frequency is at
+     * least, and at most, that of the motifs.
+     *
+     * @param pool background windows
+     * @param width window width
+     * @param n windows per resample
+     * @param observed counts of the motifs
+     * @param count number of resamples
+     * @param bootstrap draw with replacement
+     * @param random stream of the block
+     * @return tallies above and below
+     */
+    private static long[][] resample(byte[] pool, int width, int n,
+            long[] observed, int count, boolean bootstrap,
+            SplittableRandom random) {
+
+        int m = pool.length / width;
+
+        long[] above = new long[width * CODES];
+        long[] below = new long[width * CODES];
+        int[] counts = new int[width * CODES];
+
+        /** Windows drawn without replacement are taken from the front. */
+        int[] order = null;
+        if (!bootstrap) {
+            order = new int[m];
+            for (int i = 0; i < m; i++) {
+                order[i] = i;
+            }
+        }
+
+        for (int r = 0; r < count; r++) {
+
+            Arrays.fill(counts, 0);
+
+            for (int i = 0; i < n; i++) {
+
+                int drawn;
+                if (bootstrap) {
+                    drawn = random.nextInt(m);
+                } else {
+                    int j = i + random.nextInt(m - i);
+                    drawn = order[j];
+                    order[j] = order[i];
+                    order[i] = drawn;
+                }
+
+                int at = drawn * width;
+                for (int pos = 0; pos < width; pos++) {
+                    counts[pos * CODES + pool[at + pos]]++;
+                }
+            }
+
+            /** Compare frequencies over the covered windows. */
+            for (int pos = 0; pos < width; pos++) {
+
+                int base = pos * CODES;
+                long covered = n - counts[base + NONE];
+                long motifCovered = n - observed[base + NONE];
+
+                for (int code = 0; code < NONE; code++) {
+                    long left = counts[base + code] * motifCovered;
+                    long right = observed[base + code] * covered;
+                    if (left >= right) {
+                        above[base + code]++;
+                    }
+                    if (left <= right) {
+                        below[base + code]++;
+                    }
+                }
+            }
+        }
+
+        return new long[][]{above, below};
+    }
+
+    /**
+     * Encodes the windows of the tyrosine-centred motifs, aligned on the
+     * tyrosine.
+     *
+     * @param motifs
+     * @param window
+     * @return windows
+     */
+    private static byte[] motifWindows(Collection<Motif> motifs, int window) {
+
+        int width = 2 * window + 1;
+        ArrayList<Motif> scored = new ArrayList<>();
+        for (Motif motif : motifs) {
+            int center = motif.index - 1;
+            if (center >= 0 && center < motif.seq.length()
+                    && motif.seq.charAt(center) == 'Y') {
+                scored.add(motif);
+            }
+        }
+
+        byte[] windows = new byte[scored.size() * width];
+
+        for (int k = 0; k < scored.size(); k++) {
+            String seq = scored.get(k).seq;
+            int center = scored.get(k).index - 1;
+            for (int pos = 0; pos < width; pos++) {
+                int i = center - window + pos;
+                windows[k * width + pos] = code(seq, i);
+            }
+        }
+
+        return windows;
+    }
+
+    /**
+     * Encodes the window of every tyrosine of the proteins.
+     *
+     * @param proteins
+     * @param window
+     * @return windows
+     */
+    private static byte[] proteinWindows(Collection<Protein> proteins,
+            int window) {
+
+        int width = 2 * window + 1;
+
+        int count = 0;
+        for (Protein protein : proteins) {
+            CharSequence seq = protein.seq;
+            for (int i = 0; i < seq.length(); i++) {
+                if (seq.charAt(i) == 'Y') {
+                    count++;
+                }
+            }
+        }
+
+        byte[] windows = new byte[count * width];
+        int k = 0;
+
+        for (Protein protein : proteins) {
+            CharSequence seq = protein.seq;
+            for (int center = 0; center < seq.length(); center++) {
+                if (seq.charAt(center) != 'Y') {
+                    continue;
+                }
+                for (int pos = 0; pos < width; pos++) {
+                    windows[k * width + pos]
+                            = code(seq, center - window + pos);
+                }
+                k++;
+            }
+        }
+
+        return windows;
+    }
+
+    /**
+     * @param seq
+     * @param i
+     * @return code of the residue at i, or NONE outside the sequence
+     */
+    private static byte code(CharSequence seq, int i) {
+
+        if (i < 0 || i >= seq.length()) {
+            return (byte) NONE;
+        }
+
+        int code = AminoAcid.code(seq.charAt(i));
+
+        return (byte) (code < 0 ? NONE : code);
+    }
+
+    /**
+     * Counts each code at each position of the windows.
+     *
+     * @param windows
+     * @param width
+     * @return counts
+     */
+    private static long[] counts(byte[] windows, int width) {
+
+        long[] counts = new long[width * CODES];
+
+        for (int k = 0; k < windows.length; k++) {
+            counts[(k % width) * CODES + windows[k]]++;
+        }
+
+        return counts;
+    }
+
+    /**
+     * @param pos position from the tyrosine, -window to window
+     * @param code residue code
+     * @return count of the residue at the position among the motifs
+     */
+    public long observed(int pos, int code) {
+        return observed[(pos + window) * CODES + code];
+    }
+
+    /**
+     * @param pos position from the tyrosine, -window to window
+     * @param code residue code
+     * @return count expected among the motifs from the background
+     */
+    public double expected(int pos, int code) {
+
+        int base = (pos + window) * CODES;
+        long covered = windows - background[base + NONE];
+
+        return covered == 0 ? 0 : (double) background[base + code]
+                * (motifs - observed[base + NONE]) / covered;
+    }
+
+    /**
+     * Returns the log-odds of a residue at a position, in bits, with one
+     * pseudocount per amino acid.
+     *
+     * @param pos position from the tyrosine, -window to window
+     * @param code residue code
+     * @return log-odds
+     */
+    public double logOdds(int pos, int code) {
+
+        int base = (pos + window) * CODES;
+        double motifFreq = (observed[base + code] + 1.0)
+                / (motifs - observed[base + NONE] + NONE);
+        double backFreq = (background[base + code] + 1.0)
+                / (windows - background[base + NONE] + NONE);
+
+        return Math.log(motifFreq / backFreq) / Math.log(2);
+    }
+
+    /**
+     * @param pos position from the tyrosine, -window to window
+     * @param code residue code
+     * @return empirical p-value of enrichment
+     */
+    public double pEnriched(int pos, int code) {
+        return (above[(pos + window) * CODES + code] + 1.0)
+                / (resamples + 1.0);
+    }
+
+    /**
+     * @param pos position from the tyrosine, -window to window
+     * @param code residue code
+     * @return empirical p-value of depletion
+     */
+    public double pDepleted(int pos, int code) {
+        return (below[(pos + window) * CODES + code] + 1.0)
+                / (resamples + 1.0);
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing table of motif windows packed into fixed-width keys. Each
+ * residue takes 5 bits, twelve to a long, so a window of 15 residues fits in
+ * two longs; shorter windows are padded with 0, which no residue uses, so
+ * the length is part of the key. Values are motif numbers.
+ * <p>
+ * Keys are written into caller arrays with pack, then looked up without
+ * creating any object.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class MotifTable {
+
+    /** Residues per key word. */
+    private static final int PER_WORD = 12;
+
+    /** Longs per key. */
+    final int words;
+
+    /** Keys of the slots, words longs each. */
+    private long[] keys;
+
+    /** Motif number of each slot plus one, 0 if the slot is empty. */
+    private int[] values;
+
+    /** Number of keys. */
+    private int size;
+
+    /** Mask of slot numbers. */
+    private int mask;
+
+    /**
+     * Constructs a table for windows of up to the given length.
+     *
+     * @param length longest window
+     */
+    public MotifTable(int length) {
+        this.words = (length + PER_WORD - 1) / PER_WORD;
+        this.values = new int[64];
+        this.keys = new long[values.length * words];
+        this.mask = values.length - 1;
+    }
+
+    /**
+     * Packs a window of a sequence into a key.
+     *
+     * @param seq
+     * @param start
+     * @param end
+     * @param key array receiving the key
+     * @param at position of the key in the array
+     * @return false if the window holds a residue that is not a letter
+     */
+    public boolean pack(CharSequence seq, int start, int end, long[] key,
+            int at) {
+
+        Arrays.fill(key, at, at + words, 0);
+
+        for (int i = start; i < end; i++) {
+            char c = seq.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return false;
+            }
+            int j = i - start;
+            key[at + j / PER_WORD] |= (long) (c - 'A' + 1)
+                    << (5 * (j % PER_WORD));
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes a key back into its window.
+     *
+     * @param key
+     * @param at position of the key in the array
+     * @return window
+     */
+    public String unpack(long[] key, int at) {
+
+        char[] seq = new char[words * PER_WORD];
+        int length = 0;
+
+        for (; length < seq.length; length++) {
+            int code = (int) (key[at + length / PER_WORD]
+                    >>> (5 * (length % PER_WORD))) & 31;
+            if (code == 0) {
+                break;
+            }
+            seq[length] = (char) ('A' + code - 1);
+        }
+
+        return new String(seq, 0, length);
+    }
+
+    /**
+     * Returns the motif number of a key.
+     *
+     * @param key
+     * @param at position of the key in the array
+     * @return motif number, or -1 if absent
+     */
+    public int get(long[] key, int at) {
+        return values[slot(key, at)] - 1;
+    }
+
+    /**
+     * Adds a key absent from the table.
+     *
+     * @param key
+     * @param at position of the key in the array
+     * @param value motif number
+     */
+    public void put(long[] key, int at, int value) {
+
+        if (2 * (size + 1) > values.length) {
+            grow();
+        }
+
+        int slot = slot(key, at);
+        System.arraycopy(key, at, keys, slot * words, words);
+        values[slot] = value + 1;
+        size++;
+    }
+
+    /**
+     * @return number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the slot of a key, or the empty slot where it belongs.
+     *
+     * @param key
+     * @param at
+     * @return slot
+     */
+    private int slot(long[] key, int at) {
+
+        long hash = 0;
+        for (int w = 0; w < words; w++) {
+            hash = (hash ^ key[at + w]) * 0x9E3779B97F4A7C15L;
+        }
+
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+
+        while (values[slot] != 0 && !matches(slot, key, at)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Determine if a slot holds a key.
+     *
+     * @param slot
+     * @param key
+     * @param at
+     * @return
+     */
+    private boolean matches(int slot, long[] key, int at) {
+
+        for (int w = 0; w < words; w++) {
+            if (keys[slot * words + w] != key[at + w]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Doubles the table, placing every key again.
+     */
+    private void grow() {
+
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        values = new int[oldValues.length * 2];
+        keys = new long[values.length * words];
+        mask = values.length - 1;
+
+        for (int slot = 0; slot < oldValues.length; slot++) {
+            if (oldValues[slot] != 0) {
+                int to = slot(oldKeys, slot * words);
+                System.arraycopy(oldKeys, slot * words, keys, to * words,
+                        words);
+                values[to] = oldValues[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Negative motifs of a run: the windows around every tyrosine of the
+ * referenced proteins, or of every entry of the database, that were not
+ * observed. A tyrosine is observed if a peptide of the report places a
+ * phospho-tyrosine on it, and a window is observed if it is the window of a
+ * motif of the run, wherever it occurs.
+ * <p>
+ * Observed sites are held as a bitmap of positions per accession and
+ * observed windows as a set, so the proteins are enumerated in one streaming
+ * pass when the report is written.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class NegativeMotifs {
+
+    /**
+     * Receives each negative motif.
+     */
+    public interface Sink {
+
+        /**
+         * @param ref accession of the protein
+         * @param site position of the tyrosine in the protein, from 1
+         * @param seq protein sequence
+         * @param start start of the window in the sequence
+         * @param end end of the window in the sequence
+         * @throws IOException
+         */
+        void negative(String ref, int site, CharSequence seq, int start,
+                int end) throws IOException;
+    }
+
+    /** Residues on each side of the tyrosine. */
+    final int window;
+
+    /** Observed phospho-tyrosine positions of each accession, from 1. */
+    private final Map<String, BitSet> sites;
+
+    /** Windows of the motifs of the run. */
+    private final Set<String> observed;
+
+    /** Referenced proteins, searched when no database is given. */
+    private final Map<String, Protein> database;
+
+    /** Database whose every entry is searched, or null. */
+    private final ProteinSource proteome;
+
+    NegativeMotifs(int window, Map<String, BitSet> sites,
+            Set<String> observed, Map<String, Protein> database,
+            ProteinSource proteome) {
+        this.window = window;
+        this.sites = sites;
+        this.observed = observed;
+        this.database = database;
+        this.proteome = proteome;
+    }
+
+    /**
+     * @return true if every entry of the database is searched
+     */
+    public boolean isProteome() {
+        return proteome != null;
+    }
+
+    /**
+     * Enumerates the negative motifs, protein by protein in the order of the
+     * database, and tyrosine by tyrosine.
+     *
+     * @param sink
+     * @return number of negative motifs
+     * @throws IOException
+     */
+    public long forEach(Sink sink) throws IOException {
+
+        long count = 0;
+
+        if (proteome != null) {
+            for (int i = 0; i < proteome.size(); i++) {
+                count += search(AccessionIndex.accession(proteome.id(i)),
+                        proteome.sequence(i), sink);
+            }
+            return count;
+        }
+
+        for (Map.Entry<String, Protein> entry : database.entrySet()) {
+            if (entry.getValue() != null) {
+                count += search(entry.getKey(), entry.getValue().seq, sink);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Passes the unobserved windows of a protein to the sink.
+     *
+     * @param ref accession
+     * @param seq protein sequence
+     * @param sink
+     * @return number of negative motifs
+     * @throws IOException
+     */
+    private long search(String ref, CharSequence seq, Sink sink)
+            throws IOException {
+
+        BitSet marked = sites.get(ref);
+        int length = seq.length();
+        long count = 0;
+
+        for (int i = 0; i < length; i++) {
+
+            if (seq.charAt(i) != 'Y' || marked != null && marked.get(i + 1)) {
+                continue;
+            }
+
+            int start = Math.max(0, i - window);
+            int end = Math.min(length, i + window + 1);
+            if (observed.contains(seq.subSequence(start, end).toString())) {
+                continue;
+            }
+
+            sink.negative(ref, i + 1, seq, start, end);
+            count++;
+        }
+
+        return count;
+    }
+}
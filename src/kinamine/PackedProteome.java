@@ -0,0 +1,233 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Off-heap store of protein sequences, one byte per residue. Sequences are
+ * packed back to back into large direct buffers and read through Residues
+ * views, so the heap holds a few words per protein instead of a String.
+ * <p>
+ * A sequence never spans two buffers. Buffers are only appended to, so views
+ * stay valid and may be read from any thread once the store is filled.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class PackedProteome {
+
+    /** Size of each buffer. */
+    private static final int CHUNK = 1 << 22;
+
+    /** Buffers of the store, the last one being filled. */
+    private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+
+    /** Buffer being filled. */
+    private ByteBuffer current;
+
+    /**
+     * Read-only view of a sequence in a buffer.
+     */
+    public static final class Residues implements CharSequence {
+
+        private final ByteBuffer buffer;
+
+        private final int offset;
+
+        private final int length;
+
+        Residues(ByteBuffer buffer, int offset, int length) {
+
+            if (offset < 0 || length < 0
+                    || offset > buffer.limit() - length) {
+                throw new IndexOutOfBoundsException(offset + ", " + length);
+            }
+
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public Residues subSequence(int start, int end) {
+
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException(start + ", " + end);
+            }
+
+            return new Residues(buffer, offset + start, end - start);
+        }
+
+        /**
+         * Copies the residues into an array.
+         *
+         * @param bytes array of at least length bytes
+         */
+        public void copyTo(byte[] bytes) {
+
+            if (bytes.length < length) {
+                throw new IndexOutOfBoundsException(bytes.length + " < "
+                        + length);
+            }
+
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(bytes, 0, length);
+        }
+
+        @Override
+        public String toString() {
+
+            byte[] bytes = new byte[length];
+            copyTo(bytes);
+
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Database copied into a store, independent of the file it was loaded
+     * from.
+     */
+    private static final class Copy implements ProteinSource {
+
+        private final String[] ids;
+
+        private final Residues[] seqs;
+
+        Copy(String[] ids, Residues[] seqs) {
+            this.ids = ids;
+            this.seqs = seqs;
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public String id(int i) {
+            return ids[i];
+        }
+
+        @Override
+        public Protein protein(int i) {
+            return new Protein(seqs[i]);
+        }
+
+        @Override
+        public Protein protein(int i, PackedProteome store) {
+            return new Protein(seqs[i]);
+        }
+
+        @Override
+        public Residues sequence(int i) {
+            return seqs[i];
+        }
+    }
+
+    /**
+     * Copies a database into a new store, so it no longer reads the file it
+     * was loaded from.
+     *
+     * @param source
+     * @return copy of the database
+     */
+    public static ProteinSource copy(ProteinSource source) {
+
+        PackedProteome store = new PackedProteome();
+        String[] ids = new String[source.size()];
+        Residues[] seqs = new Residues[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = source.id(i);
+            seqs[i] = store.add(source.sequence(i));
+        }
+
+        return new Copy(ids, seqs);
+    }
+
+    /**
+     * Copies a sequence into the store.
+     *
+     * @param seq
+     * @return view of the stored sequence
+     */
+    public Residues add(CharSequence seq) {
+
+        ByteBuffer chunk = reserve(seq.length());
+        int offset = chunk.position();
+
+        for (int i = 0; i < seq.length(); i++) {
+            chunk.put((byte) seq.charAt(i));
+        }
+
+        return new Residues(chunk, offset, seq.length());
+    }
+
+    /**
+     * Returns a buffer with room for a sequence of at most the given length,
+     * to be written at its position and closed with added.
+     *
+     * @param length
+     * @return buffer
+     */
+    ByteBuffer reserve(int length) {
+
+        if (current == null || current.remaining() < length) {
+            current = ByteBuffer.allocateDirect(Math.max(CHUNK, length));
+            chunks.add(current);
+        }
+
+        return current;
+    }
+
+    /**
+     * Closes a sequence written into a reserved buffer.
+     *
+     * @param chunk buffer returned by reserve
+     * @param offset position of the buffer when reserved
+     * @return view of the stored sequence
+     */
+    Residues added(ByteBuffer chunk, int offset) {
+        return new Residues(chunk, offset, chunk.position() - offset);
+    }
+
+    /**
+     * @return bytes of sequence held
+     */
+    public long size() {
+
+        long size = 0;
+        for (ByteBuffer chunk : chunks) {
+            size += chunk.position();
+        }
+
+        return size;
+    }
+}
@@ -10,12 +10,8 @@
 package javaapplication4;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Peptide object representing the relevant information from the submitted
  * peptide report. Stores the values necessary for writing a report formatted
@@ -39,10 +35,14 @@ public class Peptide {
     ArrayList<String> motif;
 
     /** Index of phospho-tyrosine in the peptide sequence. */
-    ArrayList<Integer> tyrIndex;
+    int[] tyrIndex;
 
     /** Index of phospho-tyrosine in protein sequence. */
-    ArrayList<Integer> tyrProtIndex;
+    int[] tyrProtIndex;
+
+    /** Offset of the peptide in the protein of each accession, or -1 if
+     * not found; null until mapped. */
+    int[] protOffsets;
 
     /** Length of peptide sequence. */
     int length;
@@ -51,89 +51,80 @@ public class Peptide {
      * Constructs a Peptide object from the parsed peptide info from a line in
      * the peptide report.
      *
-     * @param pepInfo tab-separated line of peptide info
+     * @param seq peptide sequence
+     * @param refs protein accessions, separated by ','
+     * @param mods modifications of the peptide
+     * @param sites modification sites in the protein
+     * @param ids
+     */
+    public Peptide(String seq, String refs, String mods, String sites,
+            List<String> ids) {
+        this(seq, refs, mods, sites, ids, ModParser.PHOSPHO_Y);
+    }
+
+    /**
+     * Constructs a Peptide object, reading the modification sites with the
+     * given parser.
+     *
+     * @param seq peptide sequence
+     * @param refs protein accessions, separated by ','
+     * @param mods modifications of the peptide
+     * @param sites modification sites in the protein
      * @param ids
+     * @param parser parser of the modification sites
      */
-    public Peptide(String[] pepInfo, List ids) {
+    Peptide(String seq, String refs, String mods, String sites,
+            List<String> ids, ModParser parser) {
          
         /** Store sequence */
-        this.seq = pepInfo[2];
+        this.seq = seq;
 
         /** Store sequence length. */
-        this.length = pepInfo[2].length();
+        this.length = seq.length();
 
         /** Initialize empty motif array. */
         this.motif = new ArrayList<>();
 
         /** Extract peptide references. */
         this.id = ids;     
-        String pepInformation = pepInfo[1];
-        pepInformation = pepInformation.replace(",", ";");
-        this.ref = pepInformation;
-        
+        this.ref = refs.replace(",", ";");
 
         /** Store the index of phospho-tyrosine of the peptide and protein. */
-        this.tyrIndex = getIndex(pepInfo[3]);
-        this.tyrProtIndex = getIndex(pepInfo[4]);
+        this.tyrIndex = parser.sites(mods);
+        this.tyrProtIndex = parser.sites(sites);
     }
 
     /**
-     * Gets the index of the phospho-tyrosine in the peptide and corresponding
-     * protein, as indicated by the modification column of the peptide report.
-     * There may be more than one phospho-tyr within a peptide.
-     * <p>
-     * Location formatted as Phospho(Y)@index.
+     * Constructs a Peptide object from fields already parsed, such as those
+     * of a run snapshot.
      *
-     * @param mods string of mod locations
-     * @return ArrayList of integers.
+     * @param seq peptide sequence
+     * @param ref full accessions
+     * @param ids
+     * @param tyrIndex sites in the peptide
+     * @param tyrProtIndex sites in the protein
+     */
+    Peptide(String seq, String ref, List<String> ids, int[] tyrIndex,
+            int[] tyrProtIndex) {
+        this.seq = seq;
+        this.length = seq.length();
+        this.motif = new ArrayList<>();
+        this.id = ids;
+        this.ref = ref;
+        this.tyrIndex = tyrIndex;
+        this.tyrProtIndex = tyrProtIndex;
+    }
+
+    /**
+     * Returns the offset of the peptide in the protein of an accession.
+     *
+     * @param ref
+     * @return offset, or -1 if not found or not mapped
      */
-    private ArrayList<Integer> getIndex(String mods) {
-
-        /** Modifications are separated by ','. */
-        ArrayList<Integer> index = new ArrayList<>();
-        /** Check if phospho-tyr. */
-        if(mods.contains("Phosphorylation of Y")){
-            //System.out.print(mods);
-        
-            
-            
-            //take only the part saying Phosphorylation␣of␣Y
-            Pattern p = Pattern.compile("Phosphorylation of Y\\((.*?)\\)");
-            Matcher m = p.matcher(mods);
-            String newmods = "10000";
-            // if we find a match, get the group 
-            if (m.find())
-            {
-                newmods = m.group(1);           
-                //System.out.format("'%s'\n", newmods);
-            }
-
-            
-            
-            
-            List<String> psm = Arrays.asList(newmods.split(","));
-            //System.out.print(psm);
-
-            /** Initialize new index array. */
-            //ArrayList<Integer> index = new ArrayList<>();
-
-            /** Check all modifications. */
-            for (int i = 0; i < psm.size(); i++) {
-
-            
-            //if (psm.get(i).contains("Phosphorylation of Y")) {
-                /** Trim for correct indexing. */
-                String mod = psm.get(i).trim();
-
-                /** Add to index array */
-                String numberOnly= mod.replaceAll("[^0-9]", "");
-                index.add(Integer.valueOf(numberOnly));
-                //System.out.print(numberOnly);
-                //System.out.print("\n");
-            }
-        }
-
-        return index;
+    int protOffset(String ref) {
+
+        int i = id.indexOf(ref);
 
+        return protOffsets == null || i < 0 ? -1 : protOffsets[i];
     }
 }
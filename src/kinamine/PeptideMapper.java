@@ -0,0 +1,421 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a set of peptide sequences. Each protein is
+ * streamed through the automaton once, reporting every occurrence of every
+ * peptide, so placing all peptides costs one pass over the proteins instead
+ * of one search per peptide and protein.
+ * <p>
+ * The trie is stored in flat arrays, with the children of a state in a
+ * sibling list. States near the root, where a scan spends nearly all its
+ * time, also get a complete transition row, so most residues cost a single
+ * table lookup. Residues that occur in no peptide restart matching.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class PeptideMapper {
+
+    /** Root state. */
+    private static final int ROOT = 0;
+
+    /** Letters A-Z. */
+    private static final int LETTERS = 26;
+
+    /** Depth up to which states get a complete transition row. */
+    private static final int DENSE_DEPTH = 3;
+
+    /** Peptide sequences, by id. */
+    private final String[] peptides;
+
+    /** Code of each letter in the alphabet of the peptides, or -1. */
+    private final int[] codes = new int[LETTERS];
+
+    /** Size of the alphabet of the peptides. */
+    private int alphabet;
+
+    /** First child, next sibling and residue of each state. */
+    private int[] child;
+    private int[] sibling;
+    private byte[] label;
+
+    /** Depth of each state. */
+    private int[] depth;
+
+    /** Failure link of each state. */
+    private int[] fail;
+
+    /** Peptide ending at each state, or -1. */
+    private int[] output;
+
+    /** Nearest state on the failure chain with an output, or ROOT. */
+    private int[] dict;
+
+    /** Number of states. */
+    private int states = 1;
+
+    /** States numbered below this have a complete transition row. */
+    private int dense;
+
+    /** Complete transitions of the dense states. */
+    private int[] delta;
+
+    /**
+     * Receives each occurrence of a peptide.
+     */
+    public interface Hit {
+
+        /**
+         * @param peptide id of the peptide
+         * @param offset position of the peptide in the sequence, from 0
+         */
+        void hit(int peptide, int offset);
+    }
+
+    /**
+     * Occurrences of each peptide, as protein and offset, in scan order.
+     */
+    public static final class Positions {
+
+        /** First and last occurrence of each peptide, or -1. */
+        private final int[] first;
+        private final int[] last;
+
+        /** Next occurrence of the same peptide, protein and offset. */
+        private int[] next = new int[1024];
+        private int[] protein = new int[1024];
+        private int[] offset = new int[1024];
+        private int size;
+
+        private Positions(int peptides) {
+            first = new int[peptides];
+            last = new int[peptides];
+            Arrays.fill(first, -1);
+        }
+
+        private void add(int peptide, int prot, int off) {
+
+            if (size == next.length) {
+                next = Arrays.copyOf(next, size * 2);
+                protein = Arrays.copyOf(protein, size * 2);
+                offset = Arrays.copyOf(offset, size * 2);
+            }
+
+            next[size] = -1;
+            protein[size] = prot;
+            offset[size] = off;
+
+            if (first[peptide] < 0) {
+                first[peptide] = size;
+            } else {
+                next[last[peptide]] = size;
+            }
+            last[peptide] = size;
+            size++;
+        }
+
+        /**
+         * Returns the first offset of a peptide in a protein.
+         *
+         * @param peptide
+         * @param prot index of the protein
+         * @return offset, or -1 if the peptide does not occur in it
+         */
+        public int offset(int peptide, int prot) {
+
+            for (int k = first[peptide]; k >= 0; k = next[k]) {
+                if (protein[k] == prot) {
+                    return offset[k];
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * @return number of occurrences
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Builds the automaton over distinct peptide sequences.
+     *
+     * @param peptides
+     */
+    public PeptideMapper(List<String> peptides) {
+
+        this.peptides = peptides.toArray(new String[0]);
+
+        int capacity = 1;
+        for (String peptide : this.peptides) {
+            capacity += peptide.length();
+        }
+
+        child = new int[capacity];
+        sibling = new int[capacity];
+        label = new byte[capacity];
+        depth = new int[capacity];
+        output = new int[capacity];
+        Arrays.fill(output, -1);
+
+        /** Alphabet of the letters used by the peptides. */
+        Arrays.fill(codes, -1);
+        for (String peptide : this.peptides) {
+            for (int i = 0; i < peptide.length(); i++) {
+                char c = peptide.charAt(i);
+                if (c >= 'A' && c <= 'Z') {
+                    codes[c - 'A'] = 0;
+                }
+            }
+        }
+        for (int c = 0; c < LETTERS; c++) {
+            if (codes[c] == 0) {
+                codes[c] = alphabet++;
+            }
+        }
+
+        for (int id = 0; id < this.peptides.length; id++) {
+            insert(id);
+        }
+
+        renumber();
+        link();
+    }
+
+    /**
+     * Adds a peptide to the trie. Peptides with residues outside A-Z can
+     * not occur and are left out.
+     *
+     * @param id
+     */
+    private void insert(int id) {
+
+        String peptide = peptides[id];
+
+        for (int i = 0; i < peptide.length(); i++) {
+            if (residue(peptide.charAt(i)) < 0) {
+                return;
+            }
+        }
+
+        int state = ROOT;
+        for (int i = 0; i < peptide.length(); i++) {
+
+            int c = residue(peptide.charAt(i));
+            int next = childOf(state, c);
+
+            if (next < 0) {
+                next = states++;
+                label[next] = (byte) c;
+                depth[next] = depth[state] + 1;
+                sibling[next] = child[state];
+                child[state] = next;
+            }
+
+            state = next;
+        }
+
+        if (peptide.length() > 0) {
+            output[state] = id;
+        }
+    }
+
+    /**
+     * Renumbers the states in breadth first order, so the states near the
+     * root, and their links, are packed at the front of every array.
+     */
+    private void renumber() {
+
+        int[] order = new int[states];
+        int[] number = new int[states];
+        int tail = 1;
+
+        for (int head = 0; head < tail; head++) {
+            int state = order[head];
+            number[state] = head;
+            for (int next = child[state]; next != 0; next = sibling[next]) {
+                order[tail++] = next;
+            }
+        }
+
+        int[] newChild = new int[states];
+        int[] newSibling = new int[states];
+        byte[] newLabel = new byte[states];
+        int[] newDepth = new int[states];
+        int[] newOutput = new int[states];
+
+        for (int state = 0; state < states; state++) {
+            int n = number[state];
+            newChild[n] = child[state] == 0 ? 0 : number[child[state]];
+            newSibling[n] = sibling[state] == 0 ? 0 : number[sibling[state]];
+            newLabel[n] = label[state];
+            newDepth[n] = depth[state];
+            newOutput[n] = output[state];
+        }
+
+        child = newChild;
+        sibling = newSibling;
+        label = newLabel;
+        depth = newDepth;
+        output = newOutput;
+        fail = new int[states];
+        dict = new int[states];
+    }
+
+    /**
+     * Sets the failure and output links in breadth first order, then the
+     * transition rows of the states near the root.
+     */
+    private void link() {
+
+        for (int state = 0; state < states; state++) {
+
+            for (int next = child[state]; next != 0; next = sibling[next]) {
+
+                if (state == ROOT) {
+                    fail[next] = ROOT;
+                    continue;
+                }
+
+                int c = label[next];
+                int f = fail[state];
+                int target;
+                while ((target = step(f, c)) < 0) {
+                    f = fail[f];
+                }
+
+                fail[next] = target;
+                dict[next] = output[target] >= 0 ? target : dict[target];
+            }
+        }
+
+        /** States are in breadth first order, so failure rows are done. */
+        dense = 0;
+        while (dense < states && depth[dense] <= DENSE_DEPTH) {
+            dense++;
+        }
+
+        delta = new int[dense * alphabet];
+
+        for (int state = 0; state < dense; state++) {
+            int base = state * alphabet;
+            int failBase = fail[state] * alphabet;
+            for (int c = 0; c < alphabet; c++) {
+                int next = step(state, c);
+                delta[base + c] = next >= 0 ? next
+                        : state == ROOT ? ROOT : delta[failBase + c];
+            }
+        }
+    }
+
+    /**
+     * Follows the trie edge of a residue, or from the root any residue.
+     *
+     * @param state
+     * @param c residue
+     * @return next state, ROOT from the root if absent, or -1 if absent
+     */
+    private int step(int state, int c) {
+
+        int next = childOf(state, c);
+
+        return next < 0 && state == ROOT ? ROOT : next;
+    }
+
+    /**
+     * Finds the child of a state for a residue.
+     *
+     * @param state
+     * @param c residue
+     * @return child, or -1 if absent
+     */
+    private int childOf(int state, int c) {
+
+        for (int next = child[state]; next != 0; next = sibling[next]) {
+            if (label[next] == c) {
+                return next;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Maps a residue to the alphabet of the peptides.
+     *
+     * @param c
+     * @return code, or -1 if no peptide uses the residue
+     */
+    private int residue(char c) {
+        return c >= 'A' && c <= 'Z' ? codes[c - 'A'] : -1;
+    }
+
+    /**
+     * Streams a sequence through the automaton, reporting every occurrence
+     * of every peptide in order of end position.
+     *
+     * @param seq
+     * @param hit
+     */
+    public void scan(CharSequence seq, Hit hit) {
+
+        int state = ROOT;
+
+        for (int i = 0; i < seq.length(); i++) {
+
+            int c = residue(seq.charAt(i));
+            if (c < 0) {
+                state = ROOT;
+                continue;
+            }
+
+            /** Deep states fall back along failure links to a row. */
+            while (state >= dense && step(state, c) < 0) {
+                state = fail[state];
+            }
+            state = state < dense
+                    ? delta[state * alphabet + c] : step(state, c);
+
+            int match = output[state] >= 0 ? state : dict[state];
+            for (; match != ROOT; match = dict[match]) {
+                int id = output[match];
+                hit.hit(id, i - peptides[id].length() + 1);
+            }
+        }
+    }
+
+    /**
+     * Streams each protein through the automaton once, recording every
+     * occurrence of every peptide.
+     *
+     * @param proteins sequences, indexed by position in the list
+     * @return occurrences
+     */
+    public Positions map(List<? extends CharSequence> proteins) {
+
+        Positions positions = new Positions(peptides.length);
+
+        for (int p = 0; p < proteins.size(); p++) {
+            int prot = p;
+            scan(proteins.get(p), (id, offset) -> positions.add(id, prot,
+                    offset));
+        }
+
+        return positions;
+    }
+}
@@ -9,12 +9,12 @@
  */
 package javaapplication4;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Protein object represents a protein within the FASTA database. Object
  * captures data relevant for writing reports - protein ID and sequence.
+ * Composition is held as a histogram of residue counts; frequencies and
+ * properties are derived from it on demand. The sequence may be a view into
+ * a packed or mapped store rather than a String.
  *
  * @version 1.0
  * @author murra668
@@ -22,13 +22,10 @@ import java.util.Map;
 public class Protein {
 
     /** Amino Acid Sequence of Protein. */
-    String seq;
+    CharSequence seq;
     
-    /** Map of Amino Acid Frequencies. */
-    Map<Character, Double> comp;
-
-    /** Properties. */
-    Map<String, Double> props;
+    /** Count of each Amino Acid, indexed by residue code. */
+    final int[] counts;
 
     /** Number of Tyrosine. */
     int numTyr;
@@ -37,82 +34,87 @@ public class Protein {
     int phosphoTyr;
 
     /**
-     * Constructs a Protein Object. Captures ID and Sequence from line of Fasta
-     * Database.
+     * Constructs a Protein Object from the sequence of a Fasta Database entry.
+     *
+     * @param seq Amino acid sequence
+     */
+    public Protein(CharSequence seq) {
+        this(seq, count(seq));
+    }
+
+    /**
+     * Constructs a Protein Object from precomputed amino acid counts, as
+     * stored in a proteome index.
      *
-     * @param protein Line from Fasta Database
+     * @param seq Amino acid sequence
+     * @param counts count of each amino acid, indexed by residue code
      */
-    public Protein(String[] protein) {
-        
-        this.comp = new HashMap();    
-        this.props = new HashMap();
+    Protein(CharSequence seq, int[] counts) {
 
         /** Set Sequence. */
-        this.seq = protein[2];
+        this.seq = seq;
+
+        this.counts = counts;
+
+        /** Set the number of tyrosine. */
+        this.numTyr = counts[AminoAcid.TYR];
 
         /** Initialize to zero. */
         this.phosphoTyr = 0;
-        
-        /** Initialize frequencies. */
-        initFreq();
-        
-        /** Calculate frequencies. */
-        calcFreq();
-
-        /** Calculate sequence properties. */
-        calcProps();
     }
-    
+
     /**
-     * Initialize the frequency of each amino acid to zero.
+     * Counts each amino acid of a sequence, indexed by residue code.
+     * Residues outside AminoAcid.ACIDS are not counted.
+     *
+     * @param seq
+     * @return counts
      */
-    private void initFreq() {
+    static int[] count(CharSequence seq) {
 
-        for (char acid : AminoAcid.ACIDS) {
-            comp.put(acid, 0.0);
+        int[] counts = new int[AminoAcid.ACIDS.length];
+
+        for (int i = 0; i < seq.length(); i++) {
+            int code = AminoAcid.code(seq.charAt(i));
+            if (code >= 0) {
+                counts[code]++;
+            }
         }
+
+        return counts;
     }
 
     /**
-     * Calculate the frequency of each amino acid within the proteins sequence.
-     * Specifically record the number of tyrosine in the sequence.
+     * Calculate the frequency of an amino acid within the protein sequence,
+     * as a percentage.
+     *
+     * @param code residue code
+     * @return frequency
      */
-    private void calcFreq() {
-        
-        /** Increment for each amino acid. */
-        for (char acid : this.seq.toCharArray()) {
-            comp.computeIfPresent(acid, (k, v) -> v + 1);
-        }
-        
-        /** Set the number of tyrosine. */
-        numTyr = comp.get('Y').intValue();
-        
-        /** Calculate frequency. */
-        for (char acid : AminoAcid.ACIDS) {
-            comp.computeIfPresent(acid, (k, v) -> (v / seq.length()) * 100);
-        }
+    public double freq(int code) {
+        return ((double) counts[code] / seq.length()) * 100;
     }
 
     /**
-     * Calculate the properties of the sequence based on the amino acid comp.
+     * Calculate a property of the sequence based on the amino acid comp.
      * There are ten properties: Hydrophobic, Polar, Small, Negative, Positive,
      * Amide, Large Aliphatic, Small Aliphatic, Aromatic, Hydroxy.
+     *
+     * @param prop index of property in AminoAcid.PROPS
+     * @return sum of the frequencies of amino acids with the property
      */
-    private void calcProps() {
-        
-        for (String prop : AminoAcid.PROPS){
-            
-            double value = 0;
-            
-            for (char acid : AminoAcid.ACIDS){
-                
-                /** If amino acid has property, add to properties. */
-                if (Run.ACIDS.aAcids.get(acid).contains(prop)){
-                    value += comp.get(acid);
-                }
+    public double prop(int prop) {
+
+        double value = 0;
+
+        for (int code = 0; code < counts.length; code++) {
+
+            /** If amino acid has property, add to properties. */
+            if (AminoAcid.hasProp(code, prop)) {
+                value += freq(code);
             }
-            
-            props.put(prop, value);
         }
+
+        return value;
     }
 }
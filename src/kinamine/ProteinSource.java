@@ -0,0 +1,62 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+/**
+ * Loaded protein database whose entries can be selected by header id once
+ * the inclusion list of a run is known.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public interface ProteinSource {
+
+    /**
+     * @return number of entries
+     */
+    int size();
+
+    /**
+     * @param i entry
+     * @return header id of the entry
+     */
+    String id(int i);
+
+    /**
+     * Constructs the protein of an entry.
+     *
+     * @param i entry
+     * @return protein
+     */
+    Protein protein(int i);
+
+    /**
+     * Constructs the protein of an entry, keeping its sequence in a packed
+     * store unless the source already holds it packed.
+     *
+     * @param i entry
+     * @param store store of the run
+     * @return protein
+     */
+    default Protein protein(int i, PackedProteome store) {
+        return new Protein(store.add(protein(i).seq));
+    }
+
+    /**
+     * Returns the sequence of an entry, read in place where the source
+     * already holds it packed.
+     *
+     * @param i entry
+     * @return sequence
+     */
+    default CharSequence sequence(int i) {
+        return protein(i).seq;
+    }
+}
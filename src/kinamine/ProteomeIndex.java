@@ -0,0 +1,441 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Pre-parsed, memory-mapped index of a FASTA database. Stores the header id
+ * table, the sequences packed back to back, and the amino acid counts of
+ * every entry, so jobs against a fixed reference skip parsing. The number of
+ * tyrosine and the properties are derived from the counts.
+ * <p>
+ * The index records the size, modification time and CRC32 of the FASTA it
+ * was built from and is only used while the size and CRC32 still match. The
+ * CRC32 is only recomputed when the modification time differs, and the
+ * checksum of each FASTA is cached until its size or modification time
+ * changes.
+ * <p>
+ * Layout: header, fixed-size entry table, id pool, sequence pool.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class ProteomeIndex implements ProteinSource {
+
+    /** File extension of an index next to its FASTA. */
+    public static final String EXTENSION = ".kmi";
+
+    /** Magic number, "KMIX". */
+    private static final int MAGIC = 0x4B4D4958;
+
+    /** Format version. */
+    private static final int VERSION = 1;
+
+    /** Size of the header. */
+    private static final int HEADER = 64;
+
+    /** Checksums by canonical path: size, modification time and CRC32. */
+    private static final ConcurrentHashMap<String, long[]> CHECKSUMS
+            = new ConcurrentHashMap<>();
+
+    /** Size of an entry: id offset and length, sequence offset and length,
+     * and counts. */
+    private static final int ENTRY = 4 + 4 + 8 + 4
+            + 4 * AminoAcid.ACIDS.length;
+
+    /** Header, entry table and id pool. */
+    private final MappedByteBuffer table;
+
+    /** Sequence pool. */
+    private final MappedByteBuffer seqs;
+
+    /** Number of entries. */
+    private final int size;
+
+    /** Size, CRC32 and modification time of the indexed FASTA. */
+    private final long fastaSize;
+    private final long fastaCrc;
+    private final long fastaModified;
+
+    private ProteomeIndex(MappedByteBuffer table, MappedByteBuffer seqs) {
+        this.table = table;
+        this.seqs = seqs;
+        this.fastaSize = table.getLong(8);
+        this.fastaCrc = table.getLong(16);
+        this.size = table.getInt(24);
+        this.fastaModified = table.getLong(48);
+    }
+
+    /**
+     * Builds the index of a FASTA database.
+     *
+     * @param fastaPath FASTA database
+     * @param indexPath index file to write
+     * @throws IOException
+     */
+    public static void build(String fastaPath, String indexPath)
+            throws IOException {
+
+        long modified = new File(fastaPath).lastModified();
+        ArrayList<String> ids = new ArrayList<>();
+        ArrayList<String> seqs = new ArrayList<>();
+
+        FastaReader.read(fastaPath, id -> true, (id, seq) -> {
+            ids.add(id);
+            seqs.add(seq);
+        });
+
+        long crc = checksum(fastaPath);
+        long fastaSize = new File(fastaPath).length();
+
+        /** Size the id pool to locate the sequence pool. */
+        long idPool = HEADER + (long) ENTRY * ids.size();
+        long idBytes = 0;
+        for (String id : ids) {
+            idBytes += id.length();
+        }
+        long seqPool = idPool + idBytes;
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexPath),
+                        1 << 16))) {
+
+            /** Header. */
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fastaSize);
+            out.writeLong(crc);
+            out.writeInt(ids.size());
+            out.writeInt(0);
+            out.writeLong(idPool);
+            out.writeLong(seqPool);
+            out.writeLong(modified);
+            out.write(new byte[HEADER - 56]);
+
+            /** Entry table. */
+            int idOffset = 0;
+            long seqOffset = 0;
+            for (int i = 0; i < ids.size(); i++) {
+
+                String seq = seqs.get(i);
+
+                out.writeInt(idOffset);
+                out.writeInt(ids.get(i).length());
+                out.writeLong(seqOffset);
+                out.writeInt(seq.length());
+                for (int count : Protein.count(seq)) {
+                    out.writeInt(count);
+                }
+
+                idOffset += ids.get(i).length();
+                seqOffset += seq.length();
+            }
+
+            /** Id pool. */
+            for (String id : ids) {
+                out.write(id.getBytes(StandardCharsets.US_ASCII));
+            }
+
+            /** Sequence pool. */
+            for (String seq : seqs) {
+                out.write(seq.getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    /**
+     * Maps an index file.
+     *
+     * @param indexPath
+     * @return index
+     * @throws IOException if the file is not a valid index
+     */
+    public static ProteomeIndex open(String indexPath) throws IOException {
+
+        try (FileInputStream in = new FileInputStream(indexPath);
+                FileChannel channel = in.getChannel()) {
+
+            if (channel.size() < HEADER) {
+                throw new IOException(indexPath + " is not a proteome index");
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, HEADER);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(32)
+                    != HEADER + (long) ENTRY * header.getInt(24)) {
+                throw new IOException(indexPath + " is not a proteome index");
+            }
+
+            long seqPool = header.getLong(40);
+            if (seqPool > Integer.MAX_VALUE
+                    || channel.size() - seqPool > Integer.MAX_VALUE) {
+                throw new IOException(indexPath + " is too large to map");
+            }
+
+            MappedByteBuffer table = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, seqPool);
+            MappedByteBuffer seqs = channel.map(
+                    FileChannel.MapMode.READ_ONLY, seqPool,
+                    channel.size() - seqPool);
+
+            return new ProteomeIndex(table, seqs);
+        }
+    }
+
+    /**
+     * Finds a valid index for a FASTA database. The index is looked up next
+     * to the FASTA and next to the file it links to.
+     *
+     * @param fastaPath
+     * @return index, or null if none is present or it is stale
+     */
+    public static ProteomeIndex find(String fastaPath) {
+
+        try {
+            File fasta = new File(fastaPath);
+            File index = new File(fastaPath + EXTENSION);
+            if (!index.exists()) {
+                index = new File(fasta.getCanonicalPath() + EXTENSION);
+            }
+            if (!index.exists()) {
+                return null;
+            }
+
+            ProteomeIndex proteome = open(index.getPath());
+
+            /** An unchanged modification time vouches for the CRC32. */
+            long modified = fasta.lastModified();
+            if (proteome.fastaSize == fasta.length()
+                    && proteome.fastaModified == modified && modified != 0) {
+                CHECKSUMS.putIfAbsent(fasta.getCanonicalPath(), new long[]{
+                    proteome.fastaSize, modified, proteome.fastaCrc});
+                return proteome;
+            }
+
+            if (proteome.fastaSize != fasta.length()
+                    || proteome.fastaCrc != checksum(fastaPath)) {
+                System.out.println(index.getPath()
+                        + ", does not match " + fastaPath);
+                return null;
+            }
+
+            return proteome;
+
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the CRC32 of a file. The checksum is taken from the index next
+     * to the file if it was built from the file as it is, and computed
+     * otherwise. It is then reused until the size or modification time of
+     * the file changes.
+     *
+     * @param path
+     * @return checksum
+     * @throws IOException
+     */
+    public static long checksum(String path) throws IOException {
+
+        File file = new File(path);
+        long size = file.length();
+        long modified = file.lastModified();
+
+        try {
+            return CHECKSUMS.compute(file.getCanonicalPath(), (key, known) -> {
+                if (known != null && known[0] == size
+                        && known[1] == modified) {
+                    return known;
+                }
+                try {
+                    long crc = recorded(path, size, modified);
+                    return new long[]{size, modified,
+                        crc >= 0 ? crc : crc(path)};
+                } catch (IOException ioexception) {
+                    throw new UncheckedIOException(ioexception);
+                }
+            })[2];
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Reads the CRC32 recorded by the index next to a file, if the index was
+     * built from the file at its current size and modification time.
+     *
+     * @param path
+     * @param size size of the file
+     * @param modified modification time of the file
+     * @return checksum, or -1 if there is no such index
+     * @throws IOException
+     */
+    private static long recorded(String path, long size, long modified)
+            throws IOException {
+
+        File index = new File(path + EXTENSION);
+        if (modified == 0 || index.length() < HEADER) {
+            return -1;
+        }
+
+        byte[] bytes = new byte[HEADER];
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(index))) {
+            in.readFully(bytes);
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || header.getLong(8) != size
+                || header.getLong(48) != modified) {
+            return -1;
+        }
+
+        return header.getLong(16);
+    }
+
+    /**
+     * Computes the CRC32 of a file.
+     *
+     * @param path
+     * @return checksum
+     * @throws IOException
+     */
+    private static long crc(String path) throws IOException {
+
+        CRC32 crc = new CRC32();
+
+        try (FileInputStream in = new FileInputStream(path);
+                FileChannel channel = in.getChannel()) {
+
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += Integer.MAX_VALUE) {
+                long len = Math.min(Integer.MAX_VALUE, size - pos);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY,
+                        pos, len));
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String id(int i) {
+
+        int entry = HEADER + ENTRY * i;
+        int idPool = (int) table.getLong(32);
+
+        byte[] bytes = new byte[table.getInt(entry + 4)];
+        for (int j = 0; j < bytes.length; j++) {
+            bytes[j] = table.get(idPool + table.getInt(entry) + j);
+        }
+
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the sequence of an entry.
+     *
+     * @param i entry
+     * @return sequence
+     */
+    public String seq(int i) {
+
+        int entry = HEADER + ENTRY * i;
+        int offset = (int) table.getLong(entry + 8);
+
+        byte[] bytes = new byte[table.getInt(entry + 16)];
+        for (int j = 0; j < bytes.length; j++) {
+            bytes[j] = seqs.get(offset + j);
+        }
+
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Constructs the protein of an entry from its stored counts.
+     *
+     * @param i entry
+     * @return protein
+     */
+    @Override
+    public Protein protein(int i) {
+        return new Protein(seq(i), counts(i));
+    }
+
+    /**
+     * Constructs the protein of an entry from its stored counts, reading its
+     * sequence in place from the mapped sequence pool.
+     *
+     * @param i entry
+     * @param store unused, the pool is already packed
+     * @return protein
+     */
+    @Override
+    public Protein protein(int i, PackedProteome store) {
+        return new Protein(sequence(i), counts(i));
+    }
+
+    /**
+     * Returns a view of the sequence of an entry in the mapped pool.
+     *
+     * @param i entry
+     * @return sequence
+     */
+    @Override
+    public PackedProteome.Residues sequence(int i) {
+
+        int entry = HEADER + ENTRY * i;
+
+        return new PackedProteome.Residues(seqs,
+                (int) table.getLong(entry + 8), table.getInt(entry + 16));
+    }
+
+    /**
+     * Reads the stored amino acid counts of an entry.
+     *
+     * @param i entry
+     * @return counts
+     */
+    private int[] counts(int i) {
+
+        int entry = HEADER + ENTRY * i + 20;
+
+        int[] counts = new int[AminoAcid.ACIDS.length];
+        for (int j = 0; j < counts.length; j++) {
+            counts[j] = table.getInt(entry + 4 * j);
+        }
+
+        return counts;
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tokenizer for tabular peptide reports. Rows are split into field ranges
+ * over a reusable character buffer; tabs inside quotes do not split fields
+ * and surrounding quotes are dropped. Fields can be tested in place, and are
+ * only materialized as Strings on request, so rejected rows cost almost no
+ * allocation.
+ * <p>
+ * Columns are resolved by header name from the first row.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class ReportReader implements Closeable {
+
+    /** Exact powers of ten for fast number parsing. */
+    private static final double[] POWERS = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5,
+        1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+        1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /** Source of the report. */
+    private final Reader in;
+
+    /** Character buffer; the unread region is [pos, limit). */
+    private char[] buf = new char[1 << 16];
+    private int pos;
+    private int limit;
+
+    /** True once the source is exhausted. */
+    private boolean eof;
+
+    /** Field ranges of the current row. */
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fields;
+
+    /** Column index of each header name. */
+    private final Map<String, Integer> header;
+
+    /**
+     * Constructs a reader over a report, consuming its header row.
+     *
+     * @param in
+     * @throws IOException
+     */
+    public ReportReader(Reader in) throws IOException {
+
+        this.in = in;
+        this.header = new HashMap<>();
+
+        if (next()) {
+            for (int i = 0; i < fields; i++) {
+                header.putIfAbsent(field(i).trim(), i);
+            }
+        }
+    }
+
+    /**
+     * Opens a report file.
+     *
+     * @param path
+     * @return reader
+     * @throws IOException
+     * @throws FileNotFoundException
+     */
+    public static ReportReader open(String path) throws IOException {
+        return new ReportReader(new FileReader(path));
+    }
+
+    /**
+     * Resolves a column by header name.
+     *
+     * @param fallback column used if no name is found
+     * @param names accepted header names, in order of preference
+     * @return column index
+     */
+    public int column(int fallback, String... names) {
+
+        for (String name : names) {
+            Integer col = header.get(name);
+            if (col != null) {
+                return col;
+            }
+        }
+
+        return fallback;
+    }
+
+    /**
+     * Advances to the next row.
+     *
+     * @return false at end of report
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+
+        int scan = pos;
+
+        while (true) {
+
+            /** Find the end of the row. */
+            int end = scan;
+            while (end < limit && buf[end] != '\n') {
+                end++;
+            }
+
+            if (end < limit || eof) {
+
+                if (end == pos && end == limit) {
+                    return false;
+                }
+
+                tokenize(pos, end);
+                pos = Math.min(end + 1, limit);
+                return true;
+            }
+
+            scan = fill(end);
+        }
+    }
+
+    /**
+     * Reads more of the source, compacting or growing the buffer.
+     *
+     * @param scanned end of the region already scanned
+     * @return new position of scanned
+     * @throws IOException
+     */
+    private int fill(int scanned) throws IOException {
+
+        int kept = limit - pos;
+
+        if (kept == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        } else {
+            System.arraycopy(buf, pos, buf, 0, kept);
+        }
+
+        scanned -= pos;
+        pos = 0;
+        limit = kept;
+
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+
+        return scanned;
+    }
+
+    /**
+     * Splits a row into field ranges.
+     *
+     * @param start
+     * @param end
+     */
+    private void tokenize(int start, int end) {
+
+        if (end > start && buf[end - 1] == '\r') {
+            end--;
+        }
+
+        fields = 0;
+        boolean quoted = false;
+        int fieldStart = start;
+
+        for (int i = start; i <= end; i++) {
+
+            if (i == end || (buf[i] == '\t' && !quoted)) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            } else if (buf[i] == '"') {
+                quoted = !quoted;
+            }
+        }
+    }
+
+    /**
+     * Records a field range, dropping surrounding quotes.
+     *
+     * @param start
+     * @param end
+     */
+    private void addField(int start, int end) {
+
+        if (end - start >= 2 && buf[start] == '"' && buf[end - 1] == '"') {
+            start++;
+            end--;
+        }
+
+        if (fields == starts.length) {
+            starts = Arrays.copyOf(starts, fields * 2);
+            ends = Arrays.copyOf(ends, fields * 2);
+        }
+
+        starts[fields] = start;
+        ends[fields] = end;
+        fields++;
+    }
+
+    /**
+     * @return number of fields in the current row
+     */
+    public int fields() {
+        return fields;
+    }
+
+    /**
+     * Determine if a field is empty.
+     *
+     * @param col
+     * @return
+     */
+    public boolean isEmpty(int col) {
+
+        for (int i = starts[col]; i < ends[col]; i++) {
+            if (buf[i] != '"') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Determine if a field contains a string.
+     *
+     * @param col
+     * @param s
+     * @return
+     */
+    public boolean contains(int col, String s) {
+
+        int last = ends[col] - s.length();
+
+        for (int i = starts[col]; i <= last; i++) {
+            int j = 0;
+            while (j < s.length() && buf[i + j] == s.charAt(j)) {
+                j++;
+            }
+            if (j == s.length()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parses a field as a number. Plain decimals are parsed in place; other
+     * forms fall back to Double.valueOf.
+     *
+     * @param col
+     * @return value
+     */
+    public double number(int col) {
+
+        int start = starts[col];
+        int end = ends[col];
+
+        while (start < end && buf[start] <= ' ') {
+            start++;
+        }
+        while (end > start && buf[end - 1] <= ' ') {
+            end--;
+        }
+
+        boolean negative = start < end && buf[start] == '-';
+        int i = negative ? start + 1 : start;
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+
+        for (; i < end; i++) {
+            char c = buf[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (point) {
+                    scale++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+
+        /** Exact mantissa and power give a correctly rounded quotient. */
+        if (i == end && digits > 0 && digits <= 15 && scale < POWERS.length) {
+            double value = mantissa / POWERS[scale];
+            return negative ? -value : value;
+        }
+
+        return Double.valueOf(field(col));
+    }
+
+    /**
+     * Materializes a field, with any quotes removed.
+     *
+     * @param col
+     * @return field
+     */
+    public String field(int col) {
+
+        int start = starts[col];
+        int end = ends[col];
+
+        StringBuilder field = null;
+        for (int i = start; i < end; i++) {
+            if (buf[i] == '"') {
+                if (field == null) {
+                    field = new StringBuilder(end - start);
+                    field.append(buf, start, i - start);
+                }
+            } else if (field != null) {
+                field.append(buf[i]);
+            }
+        }
+
+        return field == null
+                ? new String(buf, start, end - start) : field.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -9,11 +9,12 @@
  */
 package javaapplication4;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Reporter class to write reports. Currently writes out in .csv format.
@@ -31,19 +32,91 @@ public class Reporter {
      * @param outGroup
      */
     static void writeReports(Run run, String outPath, String outGroup) {
+        writeReports(run, outPath, outGroup, new RunOptions());
+    }
+
+    /**
+     * Write reports for run, in the formats selected by the options.
+     *
+     * @param run
+     * @param outPath
+     * @param outGroup
+     * @param options
+     */
+    static void writeReports(Run run, String outPath, String outGroup,
+            RunOptions options) {
         
         File outDir = new File(outPath);
         if (!outDir.exists()) {
             outDir.mkdirs();
         }
         System.out.print(outDir.getAbsolutePath());
-        /** Write substrates report. */
-        File outputFileSub = new File(outDir,outGroup + "_Substrates.csv");
-        Reporter.substrates(run, outputFileSub.getPath());
+
+        boolean gzip = options.gzip;
+        String ext = gzip ? ".csv" + CsvWriter.GZIP : ".csv";
+
+        /** Write substrates report, alongside the frequency report. */
+        File outputFileSub = new File(outDir, outGroup + "_Substrates" + ext);
+        CompletableFuture<Void> substrates = CompletableFuture.runAsync(
+                () -> {
+                    RunMetrics.Stage stage = run.metrics.start("substrates");
+                    Reporter.substrates(run, outputFileSub.getPath(), gzip);
+                    stage.stop();
+                });
 
         /** Write substrate background frequency report. */
-        File outputFileFreq = new File(outDir,outGroup +  "_SubBackFreq.csv");
-        Reporter.frequencies(run, outputFileFreq.getPath());
+        RunMetrics.Stage stage = run.metrics.start("frequencies");
+        File outputFileFreq = new File(outDir, outGroup + "_SubBackFreq" + ext);
+        int unresolved = options.longFreq
+                ? Reporter.frequenciesLong(run, outputFileFreq.getPath(), gzip)
+                : Reporter.frequencies(run, outputFileFreq.getPath(), gzip);
+        stage.stop();
+
+        /** Write position-specific background report, once counted. */
+        if (run.referencedWindows != null) {
+            RunMetrics.Stage positions = run.metrics.start("positions");
+            File outputFilePos
+                    = new File(outDir, outGroup + "_PositionFreq" + ext);
+            Reporter.positions(run, outputFilePos.getPath(), gzip,
+                    options.longFreq);
+            positions.stop();
+        }
+
+        /** Write enrichment report, once scored. */
+        if (run.enrichment != null) {
+            RunMetrics.Stage enrichment = run.metrics.start("enrichment");
+            File outputFileEnr
+                    = new File(outDir, outGroup + "_Enrichment" + ext);
+            Reporter.enrichment(run, outputFileEnr.getPath(), gzip);
+            enrichment.stop();
+        }
+
+        /** Write negative motif report, streaming the proteins. */
+        if (run.negatives != null) {
+            RunMetrics.Stage negatives = run.metrics.start("negatives");
+            File outputFileNeg
+                    = new File(outDir, outGroup + "_Negatives" + ext);
+            long count = Reporter.negatives(run, outputFileNeg.getPath(),
+                    gzip);
+            negatives.stop();
+            run.metrics.count("negativeMotifs", count);
+        }
+
+        substrates.join();
+
+        /** Write timings and counters next to the reports. */
+        run.metrics.count("unresolvedAccessions", unresolved);
+        try {
+            run.metrics.write(new File(outDir, outGroup + "_Metrics.json"));
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+        }
+
+        if (unresolved > 0) {
+            System.out.println();
+            System.out.print(unresolved
+                    + " accessions not found in the database, skipped");
+        }
 
     }
 
@@ -52,154 +125,470 @@ public class Reporter {
      *
      * @param run
      * @param outputFileName
+     * @param gzip
      */
-    private static void substrates(Run run, String outputFileName) {
-
-        /** Format header */
-        String header = "Substrates," + "Species," + "Reference," + "-7," + "-6,"
-                + "-5," + "-4," + "-3," + "-2," + "-1," + "0," + "1,"
-                + "2," + "3," + "4," + "5," + "6," + "7," + ","
-                + "," + "," +"," + "," + "," +"," + "," + "," +"," + "Phosphosite"
-                + "\n";
-
-        /** Initialize details */
-        String detail = null;
+    static void substrates(Run run, String outputFileName,
+            boolean gzip) {
+
+        /** Format header, one column per position of the window. */
+        int window = run.window;
+        StringBuilder header
+                = new StringBuilder("Substrates,Species,Reference,");
+        for (int pos = -window; pos <= window; pos++) {
+            header.append(pos).append(',');
+        }
+        header.append(",,,,,,,,,,Phosphosite\n");
 
-        try (FileWriter writer = new FileWriter(outputFileName)) {
+        try (CsvWriter writer = new CsvWriter(outputFileName, gzip)) {
 
             /* Write the column headers */
-            writer.append(header);
+            writer.write(header.toString());
 
-           Collection<Motif> motifs = run.motifs.values();
+            Collection<Motif> motifs = run.motifs.values();
 
             /** Loop through each motif */
             for (Motif motif : motifs) {
 
                 /** Format ID and blanks */
-                detail = "," + "," + motif.ref + ",";
+                StringBuilder detail = writer.row();
+                detail.append(",,").append(motif.ref()).append(',');
 
                 String seq = motif.seq;
                 int index = motif.index;
 
-                if (index < 8) {
-                    for (int i = index; i < 8; i++) {
-                        detail += ",";
-                    }
-                    for (int j = 0; j < seq.length(); j++) {
-                        detail += seq.charAt(j) + ",";
-                    }
-                    if (seq.length() - index < 7) {
-                        for (int i = seq.length() - index; i < 7; i++) {
-                            detail += ",";
-                        }
-                    }
-                } else if (seq.length() < 15) {
-                    for (int j = 0; j < seq.length(); j++) {
-                        detail += seq.charAt(j) + ",";
+                if (index < window + 1) {
+                    blanks(detail, window + 1 - index);
+                    residues(detail, seq);
+                    if (seq.length() - index < window) {
+                        blanks(detail, window - (seq.length() - index));
                     }
-                    for (int i = seq.length(); i < 15; i++) {
-                        detail += ",";
-                    }
-
+                } else if (seq.length() < 2 * window + 1) {
+                    residues(detail, seq);
+                    blanks(detail, 2 * window + 1 - seq.length());
                 } else {
-                    for (int j = 0; j < seq.length(); j++) {
-                        detail += seq.charAt(j) + ",";
-                    }
+                    residues(detail, seq);
                 }
 
                 /** Format trailing blanks */
-                detail += "," + "," + "," + seq + ",";
+                detail.append(",,,").append(seq).append(',');
                 
                 for (String id : motif.regenSeqs){
-                    detail += id + ",";
+                    detail.append(id).append(',');
                 }
-                detail += "\n";
 
                 /** Append each line of the report. */
-                writer.append(detail);
+                writer.endRow();
             }
 
-            writer.flush();
-            writer.close();
-
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Appends each residue of a sequence as a cell.
+     *
+     * @param detail
+     * @param seq
+     */
+    private static void residues(StringBuilder detail, String seq) {
+        for (int j = 0; j < seq.length(); j++) {
+            detail.append(seq.charAt(j)).append(',');
+        }
+    }
+
+    /**
+     * Appends blank cells.
+     *
+     * @param detail
+     * @param count
+     */
+    private static void blanks(StringBuilder detail, int count) {
+        for (int i = 0; i < count; i++) {
+            detail.append(',');
+        }
+    }
+
     /**
      * Write substrates background frequency report from each protein in the
-     * database.
+     * database. Accessions not found in the database are skipped.
      *
      * @param run
      * @param outputFileName
+     * @param gzip
+     * @return number of accessions skipped
      */
-    private static void frequencies(Run run, String outputFileName) {
-
-        /** Initialize the header */
-        StringBuffer header = new StringBuffer();
-        header.append("Amino Acids");
-
-        /** Write each protein accession. */
-        Object[] prots = run.database.keySet().toArray();
-        for (Object ref : prots) {
-            header.append(",").append(ref);
+    static int frequencies(Run run, String outputFileName,
+            boolean gzip) {
+
+        /** Collect the proteins found in the database. */
+        ArrayList<String> refs = new ArrayList<>();
+        ArrayList<Protein> proteins = new ArrayList<>();
+        for (Entry<String, Protein> entry : run.database.entrySet()) {
+            if (entry.getValue() != null) {
+                refs.add(entry.getKey());
+                proteins.add(entry.getValue());
+            }
         }
-        header.append("\n");
 
-        try (FileWriter writer = new FileWriter(outputFileName)) {
+        try (CsvWriter writer = new CsvWriter(outputFileName, gzip)) {
 
-            /* Write the column headers. */
-            writer.append(header);
+            /** Initialize the header */
+            StringBuilder header = writer.row();
+            header.append("Amino Acids");
 
-            Collection<Protein> proteins = run.database.values();
+            /** Write each protein accession. */
+            for (String ref : refs) {
+                header.append(',').append(ref);
+            }
+            writer.endRow();
 
             /** Write frequency of each amino acid. */
-            for (char acid : AminoAcid.ACIDS) {
-                StringBuffer detail = new StringBuffer();
-                detail.append(acid);
+            for (int code = 0; code < AminoAcid.ACIDS.length; code++) {
+                StringBuilder detail = writer.row();
+                detail.append(AminoAcid.ACIDS[code]);
                 for (Protein protein : proteins) {
-                    detail.append(",").append(protein.comp.get(acid));
+                    detail.append(',').append(protein.freq(code));
                 }
-                detail.append("\n");
-                writer.append(detail);
+                writer.endRow();
             }
 
-            writer.append("Properties\n");
+            writer.write("Properties\n");
 
             /** Write the property frequency of each amino acid. */
-            for (String prop : AminoAcid.PROPS) {
-                StringBuffer props = new StringBuffer();
-                props.append(prop);
+            for (int prop = 0; prop < AminoAcid.PROPS.length; prop++) {
+                StringBuilder props = writer.row();
+                props.append(AminoAcid.PROPS[prop]);
                 for (Protein protein : proteins) {
-                    props.append(",").append(protein.props.get(prop));
+                    props.append(',').append(protein.prop(prop));
                 }
-                props.append("\n");
-                writer.append(props);
+                writer.endRow();
             }
             
-            writer.append("X\n");
-            
-            StringBuffer tyr = new StringBuffer("Number of Y");
-            StringBuffer phosphTyr = new StringBuffer("Number of pY");
-            StringBuffer aa = new StringBuffer("Total AAs");
+            writer.write("X\n");
 
             /** Write the number of tyrosine, phospho-tyrosine, and length. */
+            StringBuilder tyr = writer.row().append("Number of Y");
+            for (Protein protein : proteins) {
+                tyr.append(',').append(protein.numTyr);
+            }
+            writer.endRow();
+
+            StringBuilder phosphTyr = writer.row().append("Number of pY");
+            for (Protein protein : proteins) {
+                phosphTyr.append(',').append(protein.phosphoTyr);
+            }
+            writer.endRow();
+
+            StringBuilder aa = writer.row().append("Total AAs");
             for (Protein protein : proteins) {
-                tyr.append(",").append(protein.numTyr);
-                phosphTyr.append(",").append(protein.phosphoTyr);
-                aa.append(",").append(protein.seq.length());
+                aa.append(',').append(protein.seq.length());
             }
+            writer.endRow();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return run.database.size() - proteins.size();
+    }
+
+    /**
+     * Write substrates background frequency report in long format, one row
+     * of accession, feature and value per line. Proteins are streamed one at
+     * a time, so memory use does not grow with the number of accessions.
+     * Accessions not found in the database are skipped.
+     *
+     * @param run
+     * @param outputFileName
+     * @param gzip
+     * @return number of accessions skipped
+     */
+    private static int frequenciesLong(Run run, String outputFileName,
+            boolean gzip) {
+
+        int unresolved = 0;
+
+        try (CsvWriter writer = new CsvWriter(outputFileName, gzip)) {
+
+            writer.write("Accession,Feature,Value\n");
+
+            for (Entry<String, Protein> entry : run.database.entrySet()) {
+
+                String ref = entry.getKey();
+                Protein protein = entry.getValue();
+
+                if (protein == null) {
+                    unresolved++;
+                    continue;
+                }
 
-            writer.append(tyr + "\n");
-            writer.append(phosphTyr + "\n");
-            writer.append(aa + "\n");
+                /** Frequency of each amino acid. */
+                for (int code = 0; code < AminoAcid.ACIDS.length; code++) {
+                    writer.row().append(ref).append(',')
+                            .append(AminoAcid.ACIDS[code]).append(',')
+                            .append(protein.freq(code));
+                    writer.endRow();
+                }
 
-            writer.flush();
-            writer.close();
+                /** Property frequencies. */
+                for (int prop = 0; prop < AminoAcid.PROPS.length; prop++) {
+                    writer.row().append(ref).append(',')
+                            .append(AminoAcid.PROPS[prop]).append(',')
+                            .append(protein.prop(prop));
+                    writer.endRow();
+                }
+
+                /** Number of tyrosine, phospho-tyrosine, and length. */
+                writer.row().append(ref).append(",Number of Y,")
+                        .append(protein.numTyr);
+                writer.endRow();
+                writer.row().append(ref).append(",Number of pY,")
+                        .append(protein.phosphoTyr);
+                writer.endRow();
+                writer.row().append(ref).append(",Total AAs,")
+                        .append(protein.seq.length());
+                writer.endRow();
+            }
 
         } catch (IOException e) {
             e.printStackTrace();
         }
+
+        return unresolved;
+    }
+
+    /**
+     * Write position-specific background report: the count of each amino
+     * acid and property at each position of the tyrosine windows, in the
+     * referenced proteins and then in the whole database when it was
+     * counted. In long format, each row is the set, position, feature and
+     * count.
+     *
+     * @param run
+     * @param outputFileName
+     * @param gzip
+     * @param longFormat
+     */
+    static void positions(Run run, String outputFileName, boolean gzip,
+            boolean longFormat) {
+
+        try (CsvWriter writer = new CsvWriter(outputFileName, gzip)) {
+
+            if (longFormat) {
+                writer.write("Set,Position,Feature,Value\n");
+                positionsLong(writer, "Referenced", run.referencedWindows);
+                if (run.proteomeWindows != null) {
+                    positionsLong(writer, "Proteome", run.proteomeWindows);
+                }
+                return;
+            }
+
+            positions(writer, "Referenced", run.referencedWindows);
+            if (run.proteomeWindows != null) {
+                writer.write("\n");
+                positions(writer, "Proteome", run.proteomeWindows);
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the matrices of a set of windows, one column per position.
+     *
+     * @param writer
+     * @param name name of the set
+     * @param matrix
+     * @throws IOException
+     */
+    private static void positions(CsvWriter writer, String name,
+            WindowMatrix matrix) throws IOException {
+
+        int window = matrix.window;
+
+        /** Initialize the header, one column per position. */
+        StringBuilder header = writer.row().append(name);
+        for (int pos = -window; pos <= window; pos++) {
+            header.append(',').append(pos);
+        }
+        writer.endRow();
+
+        /** Write count of each amino acid. */
+        for (int code = 0; code < AminoAcid.ACIDS.length; code++) {
+            StringBuilder detail = writer.row();
+            detail.append(AminoAcid.ACIDS[code]);
+            for (int pos = -window; pos <= window; pos++) {
+                detail.append(',').append(matrix.count(pos, code));
+            }
+            writer.endRow();
+        }
+
+        StringBuilder total = writer.row().append("Total AAs");
+        for (int pos = -window; pos <= window; pos++) {
+            total.append(',').append(matrix.total(pos));
+        }
+        writer.endRow();
+
+        writer.write("Properties\n");
+
+        /** Write count of each property. */
+        for (int prop = 0; prop < AminoAcid.PROPS.length; prop++) {
+            StringBuilder props = writer.row();
+            props.append(AminoAcid.PROPS[prop]);
+            for (int pos = -window; pos <= window; pos++) {
+                props.append(',').append(matrix.prop(pos, prop));
+            }
+            writer.endRow();
+        }
+
+        writer.write("X\n");
+
+        writer.row().append("Number of Y,").append(matrix.windows());
+        writer.endRow();
+        writer.row().append("Proteins,").append(matrix.proteins());
+        writer.endRow();
+    }
+
+    /**
+     * Writes the matrices of a set of windows in long format.
+     *
+     * @param writer
+     * @param name name of the set
+     * @param matrix
+     * @throws IOException
+     */
+    private static void positionsLong(CsvWriter writer, String name,
+            WindowMatrix matrix) throws IOException {
+
+        int window = matrix.window;
+
+        for (int pos = -window; pos <= window; pos++) {
+
+            for (int code = 0; code < AminoAcid.ACIDS.length; code++) {
+                writer.row().append(name).append(',').append(pos).append(',')
+                        .append(AminoAcid.ACIDS[code]).append(',')
+                        .append(matrix.count(pos, code));
+                writer.endRow();
+            }
+
+            writer.row().append(name).append(',').append(pos)
+                    .append(",Total AAs,").append(matrix.total(pos));
+            writer.endRow();
+
+            for (int prop = 0; prop < AminoAcid.PROPS.length; prop++) {
+                writer.row().append(name).append(',').append(pos).append(',')
+                        .append(AminoAcid.PROPS[prop]).append(',')
+                        .append(matrix.prop(pos, prop));
+                writer.endRow();
+            }
+        }
+
+        writer.row().append(name).append(",,Number of Y,")
+                .append(matrix.windows());
+        writer.endRow();
+        writer.row().append(name).append(",,Proteins,")
+                .append(matrix.proteins());
+        writer.endRow();
+    }
+
+    /**
+     * Write enrichment report: for each position and amino acid, the count
+     * among the motifs, the count expected from the background, the
+     * log-odds and the empirical p-values of enrichment and depletion.
+     *
+     * @param run
+     * @param outputFileName
+     * @param gzip
+     */
+    static void enrichment(Run run, String outputFileName, boolean gzip) {
+
+        MotifEnrichment enrichment = run.enrichment;
+        int window = enrichment.window;
+
+        try (CsvWriter writer = new CsvWriter(outputFileName, gzip)) {
+
+            writer.write("Position,Amino Acid,Observed,Expected,Log Odds,"
+                    + "P Enriched,P Depleted\n");
+
+            for (int pos = -window; pos <= window; pos++) {
+                for (int code = 0; code < AminoAcid.ACIDS.length; code++) {
+                    writer.row().append(pos).append(',')
+                            .append(AminoAcid.ACIDS[code]).append(',')
+                            .append(enrichment.observed(pos, code))
+                            .append(',')
+                            .append(enrichment.expected(pos, code))
+                            .append(',')
+                            .append(enrichment.logOdds(pos, code))
+                            .append(',')
+                            .append(enrichment.pEnriched(pos, code))
+                            .append(',')
+                            .append(enrichment.pDepleted(pos, code));
+                    writer.endRow();
+                }
+            }
+
+            writer.row().append("Motifs,").append(enrichment.motifs);
+            writer.endRow();
+            writer.row().append("Windows,").append(enrichment.windows);
+            writer.endRow();
+            writer.row().append(enrichment.bootstrap
+                    ? "Bootstrap resamples," : "Permutations,")
+                    .append(enrichment.resamples);
+            writer.endRow();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes negative motif report, in the layout of the substrates report:
+     * the accession, one cell per position of the window, then the window
+     * and the position of the tyrosine in the protein.
+     *
+     * @param run
+     * @param outputFileName
+     * @param gzip
+     * @return number of negative motifs
+     */
+    static long negatives(Run run, String outputFileName, boolean gzip) {
+
+        int window = run.negatives.window;
+        StringBuilder header
+                = new StringBuilder("Negatives,Species,Reference,");
+        for (int pos = -window; pos <= window; pos++) {
+            header.append(pos).append(',');
+        }
+        header.append(",Motif,Site\n");
+
+        try (CsvWriter writer = new CsvWriter(outputFileName, gzip)) {
+
+            writer.write(header.toString());
+
+            return run.negatives.forEach((ref, site, seq, start, end) -> {
+
+                StringBuilder detail = writer.row();
+                detail.append(",,").append(ref).append(',');
+
+                /** Blanks where the window passes either end. */
+                int center = site - 1;
+                blanks(detail, window - (center - start));
+                for (int i = start; i < end; i++) {
+                    detail.append(seq.charAt(i)).append(',');
+                }
+                blanks(detail, window - (end - 1 - center));
+
+                detail.append(',').append(seq, start, end).append(',')
+                        .append(site);
+                writer.endRow();
+            });
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return 0;
     }
 }
@@ -9,12 +9,20 @@
  */
 package javaapplication4;
 
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 /**
  * Main KinaMine object container. A run contains ArrayLists of peptide and
@@ -34,191 +42,888 @@ public final class Run {
     /** Non-redundant collection of motifs. */
     public final Map<String, Motif> motifs;
 
-    /** Amino Acids and Properties. */
-    public static final AminoAcid ACIDS = new AminoAcid();
+    /** Index of the inclusion list accessions. */
+    private AccessionIndex index;
+
+    /** Accessions resolved by their own database entry. */
+    private final Set<String> resolved = new HashSet<>();
+
+    /** Sequences of the extracted proteins. */
+    private final PackedProteome store = new PackedProteome();
+
+    /** Number of phospho-tyrosine marked for each accession. */
+    final Map<String, Integer> marks = new ConcurrentHashMap<>();
+
+    /** Accessions added to the inclusion list from the report, and then by
+     * rescue, in order of addition. */
+    final ArrayList<String> reported = new ArrayList<>();
+    final ArrayList<String> rescued = new ArrayList<>();
+
+    /** Rescued accessions of a snapshot, added back after the new rows. */
+    private final ArrayList<String> pending = new ArrayList<>();
+
+    /** Proteins of a snapshot and its inclusion list, until the database is
+     * extracted. */
+    private Map<String, CharSequence> restored;
+    private Set<String> restoredRefs;
+
+    /** Motifs in order of first appearance. */
+    private final ArrayList<Motif> found = new ArrayList<>();
+
+    /** Motif number of each packed window, and of windows that could not
+     * be packed. */
+    private MotifTable table;
+    private final Map<String, Integer> unpacked = new HashMap<>();
+
+    /** Number of peptides whose motifs are generated. */
+    private int generated;
+
+    /** Tyrosine windows of the referenced proteins and of the whole
+     * database, once counted. */
+    WindowMatrix referencedWindows;
+    WindowMatrix proteomeWindows;
+
+    /** Enrichment of the motifs against their proteins, once scored. */
+    MotifEnrichment enrichment;
+
+    /** Unobserved tyrosine windows, once their observed sites are known. */
+    NegativeMotifs negatives;
+
+    /** Peptides are placed in their proteins. */
+    private boolean mapped;
+
+    /** Parser of the modification sites of each peptide. */
+    private final ModParser sites;
+
+    /** Residues on each side of the phospho-tyrosine in a motif. */
+    final int window;
+
+    /** Fill truncated motifs from their parent proteins. */
+    private final boolean context;
+
+    /** Keep peptides without accessions, to be found in the proteome. */
+    private final boolean rescue;
+
+    /** Timings and counters of the run. */
+    public final RunMetrics metrics = new RunMetrics();
+
+    /** Number of peptides from which motif windows are packed in parallel. */
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    /**
+     * Constructs an empty run, to be filled stage by stage.
+     */
+    Run() {
+        this(new RunOptions());
+    }
+
+    /**
+     * Constructs an empty run with the site parser and motif window of the
+     * options, to be filled stage by stage.
+     *
+     * @param options
+     */
+    Run(RunOptions options) {
+        this.sites = options.modParser();
+        this.window = options.window;
+        this.context = options.context;
+        this.rescue = options.rescue;
+        this.pepList = new ArrayList<>();
+        this.database = new HashMap<>();
+        this.motifs = new HashMap<>();
+    }
 
     /**
      * Constructs a run and processes the submitted peptide report and fasta
      * database for motif generation.
      *
-     * @param peps lines from peptide report
-     * @param prots lines for fasta database
+     * @param peps peptide report
+     * @param dbPath path of fasta or tabular database
      * @param score FDR score
      */
-    public Run(ArrayList<String> peps, ArrayList<String> prots, double score) {
+    public Run(ReportReader peps, String dbPath, double score) {
 
-        this.pepList = new ArrayList<>();
-        this.database = new HashMap();
-        this.motifs = new HashMap();
+        this();
 
         /** Extract peptides and generate custom protein database. */
         extractPeptides(peps, score);
 
         /** Extracts the proteins from the fasta database. */
-        extractDatabase(prots);
+        extractDatabase(dbPath);
+
+        /** Generate motifs for each peptide. */
+        generateMotifs();
+
+        /** Record phospho-tyrosine on each protein. */
+        markMods();
+
+    }
+
+    /**
+     * Constructs a run from the submitted peptide report, taking proteins
+     * from an already loaded database, such as a proteome index.
+     *
+     * @param peps peptide report
+     * @param proteome loaded database
+     * @param score FDR score
+     */
+    public Run(ReportReader peps, ProteinSource proteome, double score) {
+
+        this();
+
+        /** Extract peptides and generate custom protein database. */
+        extractPeptides(peps, score);
+
+        /** Extracts the proteins from the loaded database. */
+        extractDatabase(proteome);
 
         /** Generate motifs for each peptide. */
         generateMotifs();
 
+        /** Record phospho-tyrosine on each protein. */
+        markMods();
+
     }
 
     /**
      * Extracts individual peptides from the peptide report and creates new
-     * peptide objects, returns a list of peptides.
+     * peptide objects, returns a list of peptides. Columns are resolved by
+     * header name, and rows are filtered before any field is materialized.
      *
-     * @param lines Distinct peptide summary.
+     * @param report Distinct peptide summary.
      * @param score FDR score.
      * @return ArrayList of peptides
      */
-    private void extractPeptides(ArrayList<String> lines,
-            double score) {
-
-        /** Process each line of the peptide report */
-        for (String line : lines) {
-            line = line.replaceAll("\"", "");
-
-            /** Peptide report is tabular. */
-            String[] pepInfo = line.split("\\t");
-
-            /**
-             * Check to see if the peptide possesses a Conf score greater than
-             * the FDR threshold, has a peptide id, and contains a
-             * phospho-tyrosine.
-             */
-            if (Double.valueOf(pepInfo[9]) > score
-                    & !"".equals(pepInfo[1])
-                    & pepInfo[3].contains("Phosphorylation of Y")) { 
-
-                List<String> temp = Arrays.asList(pepInfo[1].split(","));
+    void extractPeptides(ReportReader report, double score) {
+
+        /** Resolve report columns, defaulting to fixed positions. */
+        int protCol = report.column(1, "Protein(s)", "Proteins");
+        int seqCol = report.column(2, "Sequence");
+        int modCol = report.column(3, "Variable Modifications");
+        int siteCol = report.column(4, "Modified Sites", "Protein Sites");
+        int confCol = report.column(9, "Confidence [%]", "Confidence");
+
+        int last = Math.max(Math.max(protCol, seqCol),
+                Math.max(Math.max(modCol, siteCol), confCol));
+
+        String[] markers = sites.markers();
+
+        RunMetrics.Stage stage = metrics.start("extractPeptides");
+        long rows = 0;
+        int passed = pepList.size();
+
+        try {
+
+            /** Process each line of the peptide report */
+            while (report.next()) {
+
+                rows++;
+
+                /**
+                 * Check to see if the peptide possesses a Conf score greater
+                 * than the FDR threshold, has a peptide id, unless peptides
+                 * are rescued, and contains a phospho-tyrosine.
+                 */
+                if (report.fields() <= last
+                        || !(report.number(confCol) > score)
+                        || (!rescue && report.isEmpty(protCol))
+                        || !hasMarker(report, modCol, markers)) {
+                    continue;
+                }
+
+                String refs = report.field(protCol);
+
                 ArrayList<String> ids = new ArrayList<>();
-                temp.stream().forEach((id) -> {
-                    ids.add(id.trim());
-                });
+                if (!report.isEmpty(protCol)) {
+                    List<String> temp = Arrays.asList(refs.split(","));
+                    temp.stream().forEach((id) -> {
+                        ids.add(id.trim());
+                    });
+                }
 
                 /** Add IDs to inclusion list, if not present. */
                 for (String ref : ids) {
                     if (!ref.contains("RRRRR")
                             & !database.containsKey(ref.trim())) {
                         this.database.put(ref, null);
+                        this.reported.add(ref);
                     }
                 }
 
                 /** Construct a new peptide object. */
-                Peptide peptide = new Peptide(pepInfo, ids);
+                Peptide peptide = new Peptide(report.field(seqCol), refs,
+                        report.field(modCol), report.field(siteCol), ids,
+                        sites);
 
                 /** Add the peptide to list if unique. */
                 this.pepList.add(peptide);
             }
+
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
         }
+
+        stage.stop();
+        metrics.count("rowsRead", rows);
+        metrics.count("rowsPassed", pepList.size() - passed);
+        metrics.count("referencedAccessions", database.size());
+    }
+
+    /**
+     * Finds the parent proteins of the peptides reported without accessions
+     * in the sequence index of the proteome. The accessions found become the
+     * references of the peptide and join the inclusion list, so they must be
+     * rescued before the database is extracted.
+     *
+     * @param sequences sequence index of the database
+     */
+    void rescuePeptides(SequenceIndex sequences) {
+
+        addPending();
+
+        RunMetrics.Stage stage = metrics.start("rescuePeptides");
+        long unassigned = 0;
+        long assigned = 0;
+        Set<String> accessions = new HashSet<>();
+
+        /** Peptides of a snapshot were rescued by the run that wrote it. */
+        for (Peptide peptide : pepList.subList(generated, pepList.size())) {
+
+            if (hasProtID(peptide)) {
+                continue;
+            }
+            unassigned++;
+
+            ArrayList<String> ids = new ArrayList<>();
+            for (int entry : sequences.entries(peptide.seq)) {
+                String ref = AccessionIndex.accession(sequences.id(entry));
+                if (!ref.contains("RRRRR") && !ids.contains(ref)) {
+                    ids.add(ref);
+                }
+            }
+
+            if (ids.isEmpty()) {
+                continue;
+            }
+
+            /** Add IDs to inclusion list, if not present. */
+            for (String ref : ids) {
+                if (!database.containsKey(ref)) {
+                    database.put(ref, null);
+                    rescued.add(ref);
+                }
+                accessions.add(ref);
+            }
+
+            peptide.id = ids;
+            peptide.ref = String.join("; ", ids);
+            assigned++;
+        }
+
+        stage.stop();
+        metrics.count("unassignedPeptides", unassigned);
+        metrics.count("rescuedPeptides", assigned);
+        metrics.count("rescuedAccessions", accessions.size());
+    }
+
+    /**
+     * Determine if a report field contains any of the markers.
+     *
+     * @param report
+     * @param col
+     * @param markers
+     * @return
+     */
+    private static boolean hasMarker(ReportReader report, int col,
+            String[] markers) {
+
+        for (String marker : markers) {
+            if (report.contains(col, marker)) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
      * Extracts individual proteins from a FASTA database, creating new protein
-     * objects from each entry and adding them to a master list.
+     * objects from each entry in the inclusion list. FASTA files are streamed
+     * and only referenced entries are materialized; other databases are read
+     * as tabular files.
      *
-     * @param fastaDatabase
-     * @return ArrayList of Proteins.
+     * @param dbPath
      */
-    private void extractDatabase(ArrayList<String> fastaDatabase) {
+    void extractDatabase(String dbPath) {
+
+        addPending();
+
+        RunMetrics.Stage stage = metrics.start("extractDatabase");
+
+        /** Index the accessions left to extract once for header resolution. */
+        Set<String> refs = restoreProteins();
+        if (refs.isEmpty()) {
+            stage.stop();
+            countProteins();
+            return;
+        }
+        this.index = new AccessionIndex(refs);
 
-        Set<String> protList = this.database.keySet();
+        try {
 
-        /** Loop through each entry. */
-        for (String line : fastaDatabase) {
+            if (!dbPath.contains("fasta")) {
+                extractTabular(dbPath);
+            } else {
 
-            /** FASTA database is tabular file. */
-            String[] protInfo = line.split("\\t");
+                /** Stream each referenced entry into the database. */
+                FastaReader.read(dbPath, this::isReferenced, this::addProtein);
+            }
 
-            /** Search if protein is in inclusion list. */
-            for (String name : protList) {
+        } catch (FileNotFoundException filenotfoundexxption) {
+            System.out.println(dbPath + ", does not exist");
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+        }
 
-                if (protInfo[0].contains(name)) {
+        stage.stop();
+        countProteins();
+    }
 
-                    /** Add protein to list. */
-                    this.database.replace(name, new Protein(protInfo));
+    /**
+     * Extracts individual proteins from a tabular database, creating new
+     * protein objects from each referenced entry. Lines are streamed, so
+     * only the referenced sequences are kept.
+     *
+     * @param dbPath
+     * @throws IOException
+     */
+    private void extractTabular(String dbPath) throws IOException {
+
+        try (BufferedReader br = new BufferedReader(new FileReader(dbPath))) {
+
+            /** Loop through each entry. */
+            for (String line = br.readLine(); line != null;
+                    line = br.readLine()) {
+
+                /** Database is tabular file. */
+                String[] protInfo = line.split("\\t");
+
+                if (protInfo.length > 2) {
+                    addProtein(protInfo[0], protInfo[2]);
                 }
             }
         }
     }
 
+    /**
+     * Extracts the referenced proteins from a loaded database, constructing
+     * only the proteins of referenced entries.
+     *
+     * @param proteome
+     */
+    void extractDatabase(ProteinSource proteome) {
+
+        addPending();
+
+        RunMetrics.Stage stage = metrics.start("extractDatabase");
+
+        /** Index the accessions left to extract once for header resolution. */
+        Set<String> refs = restoreProteins();
+        if (refs.isEmpty()) {
+            stage.stop();
+            countProteins();
+            return;
+        }
+        this.index = new AccessionIndex(refs);
+
+        for (int i = 0; i < proteome.size(); i++) {
+
+            String ref = target(proteome.id(i));
+
+            if (ref != null) {
+                this.database.put(ref, proteome.protein(i, store));
+            }
+        }
+
+        stage.stop();
+        countProteins();
+    }
+
+    /**
+     * Counts the position-specific background of the tyrosine windows in the
+     * referenced proteins and, if given, in every entry of the database.
+     *
+     * @param proteome loaded database, or null
+     */
+    void countWindows(ProteinSource proteome) {
+
+        RunMetrics.Stage stage = metrics.start("countWindows");
+
+        ArrayList<CharSequence> seqs = new ArrayList<>();
+        for (Protein protein : database.values()) {
+            if (protein != null) {
+                seqs.add(protein.seq);
+            }
+        }
+
+        referencedWindows = WindowMatrix.of(seqs, window);
+        if (proteome != null) {
+            proteomeWindows = WindowMatrix.of(proteome, window);
+        }
+
+        stage.stop();
+        metrics.count("referencedWindows", referencedWindows.windows());
+        if (proteomeWindows != null) {
+            metrics.count("proteomeWindows", proteomeWindows.windows());
+        }
+    }
+
+    /**
+     * Scores the position-specific enrichment of the motifs against the
+     * tyrosine windows of the referenced proteins.
+     *
+     * @param resamples number of resamples of the background
+     * @param bootstrap draw resamples with replacement
+     * @param seed seed of the resamples
+     */
+    void scoreEnrichment(int resamples, boolean bootstrap, long seed) {
+
+        RunMetrics.Stage stage = metrics.start("scoreEnrichment");
+
+        ArrayList<Protein> proteins = new ArrayList<>();
+        for (Protein protein : database.values()) {
+            if (protein != null) {
+                proteins.add(protein);
+            }
+        }
+
+        enrichment = MotifEnrichment.score(motifs.values(), proteins, window,
+                resamples, bootstrap, seed);
+
+        stage.stop();
+        metrics.count("scoredMotifs", enrichment.motifs);
+        metrics.count("backgroundWindows", enrichment.windows);
+        metrics.count("resamples", enrichment.resamples);
+    }
+
+    /**
+     * Collects the observed phospho-tyrosine of the run, to enumerate the
+     * unobserved tyrosine windows of the referenced proteins or, if given,
+     * of every entry of the database. A site is observed if a peptide places
+     * a phospho-tyrosine on it, either where the peptide was found in the
+     * protein or at the protein sites of the report; a window is observed if
+     * it is a full motif or a regenerated window of the run.
+     *
+     * @param proteome loaded database to search, or null
+     */
+    void findNegatives(ProteinSource proteome) {
+
+        if (!mapped) {
+            mapPeptides();
+        }
+
+        RunMetrics.Stage stage = metrics.start("findNegatives");
+
+        Map<String, BitSet> sites = new HashMap<>();
+
+        for (Peptide peptide : pepList) {
+
+            for (int k = 0; k < peptide.id.size(); k++) {
+
+                BitSet marked = sites.computeIfAbsent(peptide.id.get(k),
+                        ref -> new BitSet());
+
+                int offset = peptide.protOffsets[k];
+                if (offset >= 0) {
+                    for (int site : peptide.tyrIndex) {
+                        marked.set(offset + site);
+                    }
+                }
+
+                /** Reported protein sites are those of the first accession. */
+                if (k == 0) {
+                    for (int site : peptide.tyrProtIndex) {
+                        if (site > 0) {
+                            marked.set(site);
+                        }
+                    }
+                }
+            }
+        }
+
+        Set<String> observed = new HashSet<>();
+        for (Motif motif : motifs.values()) {
+            if (motif.seq.length() == 2 * window + 1) {
+                observed.add(motif.seq);
+            }
+            observed.addAll(motif.regenSeqs);
+        }
+
+        negatives = new NegativeMotifs(window, sites, observed, database,
+                proteome);
+
+        stage.stop();
+        metrics.count("observedWindows", observed.size());
+    }
+
+    /**
+     * Counts the referenced accessions found in the database.
+     */
+    private void countProteins() {
+
+        long found = 0;
+        for (Protein protein : database.values()) {
+            if (protein != null) {
+                found++;
+            }
+        }
+
+        metrics.count("proteinsFound", found);
+    }
+
+    /**
+     * Determine if a database entry is in the inclusion list, either by its
+     * own accession or by the canonical accession of an isoform.
+     *
+     * @param header
+     * @return
+     */
+    private boolean isReferenced(String header) {
+        return index.resolve(header) != null
+                || index.resolveCanonical(header) != null;
+    }
+
+    /**
+     * Adds a database entry to the inclusion list accession it names.
+     *
+     * @param header
+     * @param seq
+     */
+    private void addProtein(String header, String seq) {
+
+        String ref = target(header);
+
+        if (ref != null) {
+            this.database.put(ref, new Protein(store.add(seq)));
+        }
+    }
+
+    /**
+     * Returns the inclusion list accession a database entry fills. An isoform
+     * fills its canonical accession only until the canonical entry itself is
+     * found.
+     *
+     * @param header
+     * @return accession, or null
+     */
+    private String target(String header) {
+
+        String ref = index.resolve(header);
+
+        if (ref != null) {
+            this.resolved.add(ref);
+            return ref;
+        }
+
+        ref = index.resolveCanonical(header);
+
+        if (ref != null && !resolved.contains(ref)
+                && database.get(ref) == null) {
+            return ref;
+        }
+
+        return null;
+    }
+
     /**
      * Generates motifs around each phospho-tyrosine of each peptide in pepList.
      * Motifs are -4 to 4 amino acids surrounding tyr. Not all entries from
-     * distinct peptide summary have IDs. Presently, those entries are excluded.
+     * distinct peptide summary have IDs. Those entries are excluded, unless
+     * rescued from the sequence index.
      * For each peptide, find the corresponding protein, so the number of
      * phospho-tyr can be recorded and the sequence can be utilized if the motif
      * can not be generated from peptide sequence alone.
+     * <p>
+     * The window of each site is packed into a fixed-width key, in parallel
+     * for large peptide lists. Keys are then merged in report order through a
+     * primitive table, so a window only becomes a String once, for its motif,
+     * and motifs are added to the map in order of first appearance.
      */
-    private void generateMotifs() {
+    void generateMotifs() {
 
-        for (Peptide peptide : pepList) {
+        RunMetrics.Stage stage = metrics.start("generateMotifs");
 
-            /** Check to see if peptide has reference accession. */
-            if (hasProtID(peptide)) {
+        if (table == null) {
+            table = new MotifTable(2 * window + 1);
+        }
+
+        /** Peptides whose motifs are not yet generated, and their sites. */
+        int base = generated;
+        int end = pepList.size();
+        int[] firsts = new int[end - base + 1];
+        for (int i = base; i < end; i++) {
+            Peptide peptide = pepList.get(i);
+            firsts[i - base + 1] = firsts[i - base]
+                    + (hasProtID(peptide) ? peptide.tyrIndex.length : 0);
+        }
+
+        int count = firsts[end - base];
+        long[] keys = new long[count * table.words];
+        int[] centers = new int[count];
+        boolean[] packed = new boolean[count];
+
+        /** Pack the window of each site. */
+        IntStream peptides = IntStream.range(base, end);
+        if (end - base >= PARALLEL_THRESHOLD) {
+            peptides = peptides.parallel();
+        }
+        peptides.forEach(i -> {
+            Peptide peptide = pepList.get(i);
+            int first = firsts[i - base];
+            for (int s = first; s < firsts[i - base + 1]; s++) {
+                int index = peptide.tyrIndex[s - first];
+                int[] bounds = window(peptide.seq.length(), index);
+                packed[s] = table.pack(peptide.seq, bounds[0], bounds[1],
+                        keys, s * table.words);
+                centers[s] = bounds[0] > 0 ? window + 1 : index;
+            }
+        });
+
+        /** Merge each site in report order. */
+        for (int i = base; i < end; i++) {
+
+            Peptide peptide = pepList.get(i);
+            int first = firsts[i - base];
+
+            for (int s = first; s < firsts[i - base + 1]; s++) {
+
+                int site = peptide.tyrIndex[s - first];
+                int at = s * table.words;
+                String seq = null;
+                int number;
+
+                if (packed[s]) {
+                    number = table.get(keys, at);
+                } else {
+                    int[] bounds = window(peptide.seq.length(), site);
+                    seq = peptide.seq.substring(bounds[0], bounds[1]);
+                    number = unpacked.getOrDefault(seq, -1);
+                }
 
-                /** For phospho-tyrosine in the peptide. */
-                for (int index : peptide.tyrIndex) {
+                /** Check if sequence is unique. */
+                if (number >= 0) {
+                    addMotif(found.get(number), peptide, centers[s], site);
+                    continue;
+                }
 
-                    /** Generate the motif using peptide sequence. */
-                    genSeq(peptide, index);
-//YOU ARE HERE
+                if (packed[s]) {
+                    seq = table.unpack(keys, at);
                 }
+
+                addFound(newMotif(seq, peptide, centers[s], site), keys, at,
+                        packed[s]);
             }
         }
+
+        generated = end;
+
+        stage.stop();
+        metrics.count("uniqueMotifs", motifs.size());
     }
 
     /**
-     * Find the proteins associated with the peptide ID in the database. Mark
-     * each protein's phospho-tyrosine field if visited.
+     * Adds a motif new to the run, after every motif found so far.
+     *
+     * @param motif
+     * @param key packed window of the motif
+     * @param at position of the key in the array
+     * @param packed false if the window could not be packed
+     */
+    private void addFound(Motif motif, long[] key, int at, boolean packed) {
+
+        if (packed) {
+            table.put(key, at, found.size());
+        } else {
+            unpacked.put(motif.seq, found.size());
+        }
+
+        found.add(motif);
+        motifs.put(motif.seq, motif);
+    }
+
+    /**
+     * @return motifs in order of first appearance
+     */
+    List<Motif> motifsInOrder() {
+        return found;
+    }
+
+    /**
+     * Restores the state of a snapshot into an empty run, as if its report
+     * had just been processed: peptides with their motifs generated, the
+     * inclusion list in order of addition, the marks and the motifs in order
+     * of first appearance. Rescued accessions are added back once the new
+     * rows are read, where a full run adds them. The proteins of the
+     * snapshot fill its accessions, and only the accessions added since and
+     * those sharing their root are extracted.
+     *
+     * @param peptides
+     * @param reportedRefs accessions added from the report
+     * @param rescuedRefs accessions added by rescue
+     * @param snapshotMarks
+     * @param snapshotMotifs motifs in order of first appearance
+     * @param proteins proteins found in the database, by accession
+     */
+    void restore(List<Peptide> peptides, List<String> reportedRefs,
+            List<String> rescuedRefs, Map<String, Integer> snapshotMarks,
+            List<Motif> snapshotMotifs, Map<String, CharSequence> proteins) {
+
+        pepList.addAll(peptides);
+        generated = pepList.size();
+
+        for (String ref : reportedRefs) {
+            database.put(ref, null);
+            reported.add(ref);
+        }
+        pending.addAll(rescuedRefs);
+
+        marks.putAll(snapshotMarks);
+
+        table = new MotifTable(2 * window + 1);
+        long[] key = new long[table.words];
+        for (Motif motif : snapshotMotifs) {
+            boolean packed = table.pack(motif.seq, 0, motif.seq.length(),
+                    key, 0);
+            addFound(motif, key, 0, packed);
+        }
+
+        restored = proteins;
+        restoredRefs = new HashSet<>(reportedRefs);
+        restoredRefs.addAll(rescuedRefs);
+
+        metrics.count("restoredPeptides", peptides.size());
+        metrics.count("restoredMotifs", snapshotMotifs.size());
+    }
+
+    /**
+     * Adds the rescued accessions of a snapshot back to the inclusion list,
+     * after the accessions of the report.
+     */
+    private void addPending() {
+
+        for (String ref : pending) {
+            if (!database.containsKey(ref)) {
+                database.put(ref, null);
+                rescued.add(ref);
+            }
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * Fills the database from the proteins of a snapshot and returns the
+     * accessions left to extract: those added since, with the accessions of
+     * the snapshot sharing their root. Only accessions of one root compete
+     * for a database entry, so the others keep the proteins an extraction
+     * would give them.
+     *
+     * @return accessions to extract
+     */
+    private Set<String> restoreProteins() {
+
+        Map<String, CharSequence> proteins = restored;
+        Set<String> refs = restoredRefs;
+        restored = null;
+        restoredRefs = null;
+
+        if (proteins == null) {
+            return database.keySet();
+        }
+
+        Set<String> extract = new HashSet<>();
+        Set<String> roots = new HashSet<>();
+        for (String ref : database.keySet()) {
+            if (!refs.contains(ref)) {
+                extract.add(ref);
+                roots.add(AccessionIndex.root(ref));
+            }
+        }
+        for (String ref : refs) {
+            if (roots.contains(AccessionIndex.root(ref))) {
+                extract.add(ref);
+            }
+        }
+
+        int filled = 0;
+        for (Map.Entry<String, CharSequence> entry : proteins.entrySet()) {
+            if (!extract.contains(entry.getKey())) {
+                database.put(entry.getKey(),
+                        new Protein(store.add(entry.getValue())));
+                filled++;
+            }
+        }
+
+        metrics.count("restoredProteins", filled);
+
+        return extract;
+    }
+
+    /**
+     * Mark a phospho-tyrosine for each protein associated with the peptide
+     * ID. Marks are kept by accession, so motifs can be generated before the
+     * database is extracted.
      *
      * @param id
-     * @return protein sequence
      */
     private void markMod(List<String> id) {
 
         /** Loop through each reference. */
         for (String ref : id) {
+            marks.merge(ref, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Record the marked phospho-tyrosine on each protein found in the
+     * database.
+     */
+    void markMods() {
+
+        RunMetrics.Stage stage = metrics.start("markMods");
 
-            /** If found, mark pY and capture sequence. */
-            if (database.containsKey(ref)) {
-                database.get(ref).phosphoTyr++;
+        for (Map.Entry<String, Integer> mark : marks.entrySet()) {
+
+            Protein protein = database.get(mark.getKey());
+
+            /** If found, mark pY. */
+            if (protein != null) {
+                protein.phosphoTyr += mark.getValue();
             }
         }
+
+        stage.stop();
     }
 
     /**
-     * Generate the peptide motif using the given index and sequence. Peptide
-     * motifs are the immediate -4 to +4 around a given index.
-     * <p>
-     * Some peptides may not have enough sequence to generate full motif.
+     * Selects the window around an index of a sequence, truncated at either
+     * end of the sequence.
      *
-     * @param peptide
-     * @param index index of phospho-tyrosine in seq
-     * @param pSeq protein sequence
+     * @param length length of the sequence
+     * @param index index of phospho-tyrosine, from 1
+     * @return start and end of the window
      */
-    private void genSeq(Peptide peptide, int index) {
-
-        String motif = "";
-        String seq = peptide.seq;
-//        System.out.print(index);
-//        System.out.print("\n");
-
-        /** Select surrounding amino acids. */
-        if (index - 7 >= 1 & index + 7 <= seq.length()) {
-            motif = seq.substring(index - 8, index + 7);
-            index = 8;
-        } else if (index - 7 < 1 & index + 7 <= seq.length()) {
-            motif = seq.substring(0, index + 7);
-        } else if (index - 7 >= 1 & index + 7 > seq.length()) {
-            
-            motif = seq.substring(index - 8, seq.length());
-            index = 8;
-        } else {
-            motif = seq;
-        }
+    private int[] window(int length, int index) {
+
+        boolean left = index - window >= 1;
+        boolean right = index + window <= length;
 
-        addMotif(motif, peptide, index);
+        if (left) {
+            return new int[]{index - window - 1,
+                right ? index + window : length};
+        }
 
+        return new int[]{0, right ? index + window : length};
     }
 
     /**
@@ -232,94 +937,187 @@ public final class Run {
     }
 
     /**
-     * Adds seq to motif map. Also pair peptide refs and index of phospho-
-     * -tyrosine.
+     * Creates the motif of a window at its first site, marking the
+     * phospho-tyrosine of each reference of the peptide. Also pair peptide
+     * refs and index of phospho-tyrosine.
      *
-     * @param seq
-     * @param ref
-     * @param index
+     * @param seq window
+     * @param peptide
+     * @param index position of the phospho-tyrosine in the window
+     * @param site position of the phospho-tyrosine in the peptide
+     * @return motif
      */
-    private void addMotif(String seq, Peptide peptide, int index) {
+    private Motif newMotif(String seq, Peptide peptide, int index, int site) {
 
-        /** Check if sequence is unique. */
-        if (!motifs.containsKey(seq)) {
-            ArrayList<String> regenSeqs = regenSeq(peptide.id, seq, index);
-            motifs.put(seq, new Motif(seq, peptide.ref, index, regenSeqs));
-            markMod(peptide.id);
-        } else {
-            List<String> refs = peptide.id;
-            List<String> ids = parseRef(motifs.get(seq).ref);
-            ArrayList<String> newID = new ArrayList<>();
+        markMod(peptide.id);
 
-            for (String ref : refs) {
-                if (!ids.contains(ref)) {
-                    newID.add(ref);
-                }
-            }
-
-            if (!newID.isEmpty()) {
-                markMod(newID);
-                ids.addAll(newID);
-                String temp = "";
-                for (String id : ids) {
-                    temp += id + ";";
-                }
-                ArrayList<String> regenSeqs = regenSeq(ids, seq, index);
-                motifs.put(seq, new Motif(seq, temp, index, regenSeqs));
-            }
+        Motif motif = new Motif(seq, peptide.ref, index, new ArrayList<>());
+        if (context) {
+            motif.addOrigin(peptide.id, peptide, site);
         }
+
+        return motif;
     }
 
-    /** Parse the reference string of peptide.
+    /**
+     * Merges the peptide of a site into the motif of its window, marking the
+     * phospho-tyrosine of each reference new to the motif. The motif is
+     * updated in place.
      *
-     * @param ref
-     * @return
+     * @param motif motif of the window
+     * @param peptide
+     * @param index position of the phospho-tyrosine in the window
+     * @param site position of the phospho-tyrosine in the peptide
      */
-    public List<String> parseRef(String ref) {
-        List<String> temp = Arrays.asList(ref.split(";"));
-        ArrayList<String> ids = new ArrayList<>();
-        temp.stream().forEach((id) -> {
-            ids.add(id.replace("\"", ""));
-        });
-//////////////////ya te ta tally tee tel to
-        return ids;
+    private void addMotif(Motif motif, Peptide peptide, int index, int site) {
+
+        ArrayList<String> newID = new ArrayList<>();
+
+        for (String ref : peptide.id) {
+            if (!motif.hasRef(ref)) {
+                newID.add(ref);
+            }
+        }
+
+        if (newID.isEmpty()) {
+            return;
+        }
+
+        markMod(newID);
+        motif.addRefs(newID);
+        motif.index = index;
+        if (context) {
+            motif.addOrigin(newID, peptide, site);
+        }
     }
+    /**
+     * Locates every peptide in the parent proteins of the run in one pass:
+     * the proteins are streamed once through an automaton of the distinct
+     * peptide sequences. Sets the offset of each peptide in the protein of
+     * each of its accessions, and checks the protein sites of the report
+     * against them.
+     */
+    void mapPeptides() {
 
-    private ArrayList<String> regenSeq(List<String> ids, String seq, int i) {
+        RunMetrics.Stage stage = metrics.start("mapPeptides");
 
+        /** Distinct sequences of the peptides with accessions. */
+        Map<String, Integer> seqIds = new HashMap<>();
         ArrayList<String> seqs = new ArrayList<>();
-//this is where I need to remove phosphosite
-        /*for (String id : ids) {
-            if (database.containsKey(id)) {
-//                System.out.print(id);
-//                System.out.print("\n");
-//                id = id.replace("\"", "");
-//                System.out.print(id);
-//                System.out.print("\n");
-                String prot = database.get(id).seq;
-                int index = prot.indexOf(seq) + i;
-                
-                String motif = "";
-                
-                if (index - 7 >= 1 & index + 7 <= prot.length()) {
-                    motif = prot.substring(index - 8, index + 7);
-                } else if (index - 7 < 1 & index + 7 <= prot.length()) {
-                    motif = prot.substring(0, index + 7);
-                } else if (index - 7 >= 1 & index + 7 > prot.length()) {
-                    motif = prot.substring(index - 8, prot.length());
+        for (Peptide peptide : pepList) {
+            if (hasProtID(peptide) && !seqIds.containsKey(peptide.seq)) {
+                seqIds.put(peptide.seq, seqs.size());
+                seqs.add(peptide.seq);
+            }
+        }
+
+        /** Proteins found in the database. */
+        Map<String, Integer> protIds = new HashMap<>();
+        ArrayList<CharSequence> prots = new ArrayList<>();
+        for (Map.Entry<String, Protein> entry : database.entrySet()) {
+            if (entry.getValue() != null) {
+                protIds.put(entry.getKey(), prots.size());
+                prots.add(entry.getValue().seq);
+            }
+        }
+
+        PeptideMapper.Positions positions
+                = new PeptideMapper(seqs).map(prots);
+
+        long matches = 0;
+        long mismatches = 0;
+
+        for (Peptide peptide : pepList) {
+
+            Integer seqId = seqIds.get(peptide.seq);
+            int[] offsets = new int[peptide.id.size()];
+
+            for (int i = 0; i < offsets.length; i++) {
+                Integer protId = protIds.get(peptide.id.get(i));
+                offsets[i] = seqId == null || protId == null
+                        ? -1 : positions.offset(seqId, protId);
+            }
+
+            peptide.protOffsets = offsets;
+
+            /** Reported protein sites are those of the first accession. */
+            if (offsets.length > 0 && offsets[0] >= 0
+                    && peptide.tyrProtIndex.length == peptide.tyrIndex.length
+                    && peptide.tyrIndex.length > 0) {
+                boolean match = true;
+                for (int k = 0; k < peptide.tyrIndex.length; k++) {
+                    match &= offsets[0] + peptide.tyrIndex[k]
+                            == peptide.tyrProtIndex[k];
+                }
+                if (match) {
+                    matches++;
                 } else {
-                    motif = prot;
+                    mismatches++;
+                }
+            }
+        }
+
+        stage.stop();
+        metrics.count("peptideOccurrences", positions.size());
+        metrics.count("proteinSitesMatched", matches);
+        metrics.count("proteinSitesMismatched", mismatches);
+        mapped = true;
+    }
+
+    /**
+     * Fills each truncated motif from the parent proteins of its accessions.
+     * The windows of the phospho-tyrosine in each protein become the
+     * regenerated sequences of the motif. Needs the database and the
+     * peptide offsets.
+     */
+    void extendMotifs() {
+
+        if (!context) {
+            return;
+        }
+
+        mapPeptides();
+
+        RunMetrics.Stage stage = metrics.start("extendMotifs");
+        long extended = 0;
+
+        for (Motif motif : motifs.values()) {
+
+            if (motif.seq.length() == 2 * window + 1) {
+                continue;
+            }
+
+            for (String id : motif.refs()) {
+
+                /** References of the first peptide may keep spaces. */
+                String ref = id.trim();
+                Motif.Origin origin = motif.origin(ref);
+                Protein protein = database.get(ref);
+                if (origin == null || protein == null) {
+                    continue;
                 }
-                
-                if (!seqs.contains(motif)){
-                    seqs.add(motif);
+
+                int offset = origin.peptide.protOffset(ref);
+                if (offset < 0) {
+                    continue;
                 }
 
+                CharSequence prot = protein.seq;
+                int[] bounds = window(prot.length(), offset + origin.site);
+                String seq = prot.subSequence(bounds[0], bounds[1])
+                        .toString();
+
+                if (!motif.regenSeqs.contains(seq)) {
+                    motif.regenSeqs.add(seq);
+                }
+            }
+
+            if (!motif.regenSeqs.isEmpty()) {
+                extended++;
             }
         }
-        */
-        return seqs;
 
+        stage.stop();
+        metrics.count("extendedMotifs", extended);
     }
-
 }
@@ -0,0 +1,249 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Timings and counters of a run. Each stage records its wall time, and the
+ * CPU time and allocation of the thread that started it; counters record how
+ * much data passed each stage. Written as a JSON sidecar next to the reports.
+ * <p>
+ * Work a stage hands to pool workers, such as parallel motif generation, is
+ * not in its thread figures; it is only in the CPU time of the whole process,
+ * written with the heap and GC totals.
+ * <p>
+ * With -Dkinamine.jfr=true every stage is also emitted as a JFR event
+ * (kinamine.Stage) on JDK 11 or later, visible in any running flight
+ * recording.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class RunMetrics {
+
+    /** Emit stages as JFR events. */
+    private static final boolean JFR = Boolean.getBoolean("kinamine.jfr");
+
+    /** Nanoseconds per millisecond. */
+    private static final double MS = 1e6;
+
+    /** Bytes per MB. */
+    private static final double MB = 1 << 20;
+
+    /** Source of thread CPU times and allocation. */
+    private static final ThreadMXBean THREADS
+            = ManagementFactory.getThreadMXBean();
+
+    /** Recorded stages, in order of completion. */
+    private final Map<String, long[]> stages = new LinkedHashMap<>();
+
+    /** Counters, in order of first update. */
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+    /**
+     * Stage being timed on the thread that started it.
+     */
+    public final class Stage {
+
+        private final String name;
+
+        private final long wall;
+
+        private final long cpu;
+
+        private final long allocated;
+
+        private final StageEvent event;
+
+        private Stage(String name) {
+            this.name = name;
+            this.event = JFR ? StageEvent.begin(name) : null;
+            this.allocated = allocated();
+            this.cpu = cpu();
+            this.wall = System.nanoTime();
+        }
+
+        /**
+         * Records the stage. Must be called on the thread that started it.
+         */
+        public void stop() {
+
+            long[] times = {System.nanoTime() - wall, cpu() - cpu,
+                allocated() - allocated};
+            record(name, times);
+
+            if (event != null) {
+                event.commit(times[1], times[2]);
+            }
+        }
+    }
+
+    /**
+     * Starts timing a stage on the current thread.
+     *
+     * @param name
+     * @return stage to stop once done
+     */
+    public Stage start(String name) {
+        return new Stage(name);
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param name
+     * @param n
+     */
+    public synchronized void count(String name, long n) {
+        counters.merge(name, n, Long::sum);
+    }
+
+    /**
+     * Records a stage, adding to an earlier stage of the same name.
+     *
+     * @param name
+     * @param times wall, CPU and allocated
+     */
+    private synchronized void record(String name, long[] times) {
+
+        long[] total = stages.get(name);
+        if (total == null) {
+            stages.put(name, times);
+        } else {
+            for (int i = 0; i < total.length; i++) {
+                total[i] += times[i];
+            }
+        }
+    }
+
+    /**
+     * @return CPU time of the current thread, or 0 if unsupported
+     */
+    private static long cpu() {
+        return THREADS.isCurrentThreadCpuTimeSupported()
+                ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * @return bytes allocated by the current thread, or 0 if unsupported
+     */
+    private static long allocated() {
+
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return CPU time of the whole process, or 0 if unsupported
+     */
+    private static long processCpu() {
+
+        if (ManagementFactory.getOperatingSystemMXBean()
+                instanceof com.sun.management.OperatingSystemMXBean) {
+            return Math.max(0, ((com.sun.management.OperatingSystemMXBean)
+                    ManagementFactory.getOperatingSystemMXBean())
+                    .getProcessCpuTime());
+        }
+
+        return 0;
+    }
+
+    /**
+     * Writes the metrics as JSON, with the CPU time of the process and the
+     * peak heap and GC totals of the JVM so far.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public synchronized void write(File file) throws IOException {
+
+        StringBuilder json = new StringBuilder("{\n  \"stages\": {");
+
+        String sep = "\n";
+        for (Map.Entry<String, long[]> stage : stages.entrySet()) {
+            long[] times = stage.getValue();
+            json.append(sep).append("    \"").append(stage.getKey())
+                    .append("\": {\"wallMs\": ").append(round(times[0] / MS))
+                    .append(", \"threadCpuMs\": ").append(round(times[1] / MS))
+                    .append(", \"threadAllocatedMB\": ")
+                    .append(round(times[2] / MB))
+                    .append('}');
+            sep = ",\n";
+        }
+
+        json.append("\n  },\n  \"counters\": {");
+
+        sep = "\n";
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            json.append(sep).append("    \"").append(counter.getKey())
+                    .append("\": ").append(counter.getValue());
+            sep = ",\n";
+        }
+
+        long peak = 0;
+        long used = 0;
+        for (MemoryPoolMXBean pool
+                : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+                used += pool.getUsage().getUsed();
+            }
+        }
+
+        long gcTime = 0;
+        long gcCount = 0;
+        for (GarbageCollectorMXBean gc
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcTime += Math.max(0, gc.getCollectionTime());
+            gcCount += Math.max(0, gc.getCollectionCount());
+        }
+
+        json.append("\n  },\n  \"process\": {\"cpuMs\": ")
+                .append(round(processCpu() / MS))
+                .append("},\n  \"heap\": {\"peakMB\": ")
+                .append(round(peak / MB))
+                .append(", \"usedMB\": ").append(round(used / MB))
+                .append(", \"maxMB\": ")
+                .append(round(Runtime.getRuntime().maxMemory() / MB))
+                .append("},\n  \"gc\": {\"count\": ").append(gcCount)
+                .append(", \"timeMs\": ").append(gcTime).append("}\n}\n");
+
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            out.write(json.toString());
+        }
+    }
+
+    /**
+     * Rounds to one decimal for display.
+     *
+     * @param value
+     * @return rounded value
+     */
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
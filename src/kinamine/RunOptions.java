@@ -0,0 +1,274 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+/**
+ * Optional flags given after the positional arguments of a run.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class RunOptions {
+
+    /** Number of positional arguments. */
+    public static final int POSITIONAL = 5;
+
+    /** Compress reports with gzip (--gzip). */
+    public boolean gzip;
+
+    /** Write the background frequency report in long format (--long). */
+    public boolean longFreq;
+
+    /** Number of reports processed at once in batch mode (--threads=N). */
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    /** Local port of the KinaMine service (--port=N). */
+    public int port = 8765;
+
+    /** Estimated memory allowed per service job in MB, 0 for no cap
+     * (--job-memory=MB). */
+    public int jobMemory;
+
+    /** Modification whose sites make motifs, as NAME:RESIDUES
+     * (--mod=Phosphorylation:Y). */
+    public String mod;
+
+    /** Modifications are in ProteinPilot syntax (--protein-pilot). */
+    public boolean proteinPilot;
+
+    /** Residues on each side of the phospho-tyrosine in a motif
+     * (--window=N). */
+    public int window = 7;
+
+    /** Fill motifs truncated by the peptide from the parent proteins
+     * (--context). */
+    public boolean context;
+
+    /** Find the parent proteins of peptides reported without accessions
+     * in the sequence index of the database (--rescue). */
+    public boolean rescue;
+
+    /** Write the position-specific background of the tyrosine windows
+     * (--positions). */
+    public boolean positions;
+
+    /** Resamples of the background scoring the enrichment of the motifs,
+     * 0 for none (--resamples=N). */
+    public int resamples;
+
+    /** Draw the resamples with replacement instead of permuting
+     * (--bootstrap). */
+    public boolean bootstrap;
+
+    /** Write the unobserved tyrosine windows of the referenced proteins,
+     * or of every protein of the database
+     * (--negatives[=referenced|proteome]). */
+    public String negatives;
+
+    /** Snapshot file written after the run, to be extended with new rows
+     * (--snapshot=PATH). */
+    public String snapshot;
+
+    /** Restore the snapshot before the run, whose report then only holds
+     * the new rows (--append). */
+    public boolean append;
+
+    /** Seed of generated workloads and of resamples (--seed=N). */
+    public long seed = 7;
+
+    /** Scales of the harness as proteins x peptides, separated by ','
+     * (--ladder=PxM,...). */
+    public String ladder = "20000x1000,20000x10000,200000x100000";
+
+    /** Directory of golden reports the harness compares against
+     * (--golden=DIR). */
+    public String golden;
+
+    /** Record the harness reports as golden instead of comparing
+     * (--record). */
+    public boolean record;
+
+    /**
+     * Parses the flags following the positional arguments.
+     *
+     * @param args
+     * @return options
+     */
+    public static RunOptions parse(String[] args) {
+        return parse(args, POSITIONAL);
+    }
+
+    /**
+     * Parses the flags from a position of the arguments on.
+     *
+     * @param args
+     * @param from index of the first flag
+     * @return options
+     */
+    public static RunOptions parse(String[] args, int from) {
+
+        RunOptions options = new RunOptions();
+
+        for (int i = from; i < args.length; i++) {
+
+            String arg = args[i];
+            String value = arg.indexOf('=') > 0
+                    ? arg.substring(arg.indexOf('=') + 1) : null;
+
+            if (arg.startsWith("--threads=")) {
+                options.threads = Math.max(1,
+                        integer(arg, value, options.threads));
+                continue;
+            }
+            if (arg.startsWith("--port=")) {
+                options.port = integer(arg, value, options.port);
+                continue;
+            }
+            if (arg.startsWith("--job-memory=")) {
+                options.jobMemory = Math.max(0,
+                        integer(arg, value, options.jobMemory));
+                continue;
+            }
+
+            if (arg.startsWith("--mod=")) {
+                options.mod = value;
+                continue;
+            }
+            if (arg.startsWith("--window=")) {
+                options.window = Math.max(1,
+                        integer(arg, value, options.window));
+                continue;
+            }
+            if (arg.startsWith("--seed=")) {
+                options.seed = number(arg, value, options.seed);
+                continue;
+            }
+            if (arg.startsWith("--resamples=")) {
+                options.resamples = Math.max(0,
+                        integer(arg, value, options.resamples));
+                continue;
+            }
+            if ("--negatives=referenced".equals(arg)
+                    || "--negatives=proteome".equals(arg)) {
+                options.negatives = value;
+                continue;
+            }
+            if (arg.startsWith("--snapshot=")) {
+                options.snapshot = value;
+                continue;
+            }
+            if (arg.startsWith("--ladder=")) {
+                options.ladder = value;
+                continue;
+            }
+            if (arg.startsWith("--golden=")) {
+                options.golden = value;
+                continue;
+            }
+
+            switch (arg) {
+                case "--gzip":
+                    options.gzip = true;
+                    break;
+                case "--long":
+                    options.longFreq = true;
+                    break;
+                case "--context":
+                    options.context = true;
+                    break;
+                case "--rescue":
+                    options.rescue = true;
+                    break;
+                case "--positions":
+                    options.positions = true;
+                    break;
+                case "--bootstrap":
+                    options.bootstrap = true;
+                    break;
+                case "--negatives":
+                    options.negatives = "referenced";
+                    break;
+                case "--append":
+                    options.append = true;
+                    break;
+                case "--protein-pilot":
+                    options.proteinPilot = true;
+                    break;
+                case "--record":
+                    options.record = true;
+                    break;
+                default:
+                    System.out.println(arg + ", unknown option");
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * Parses the value of an integer flag, keeping the default if it is not
+     * a number.
+     *
+     * @param arg flag
+     * @param value
+     * @param fallback default
+     * @return value
+     */
+    private static int integer(String arg, String value, int fallback) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException numberformatexception) {
+            System.out.println(arg + ", invalid value");
+            return fallback;
+        }
+    }
+
+    /**
+     * Parses the value of a long flag, keeping the default if it is not a
+     * number.
+     *
+     * @param arg flag
+     * @param value
+     * @param fallback default
+     * @return value
+     */
+    private static long number(String arg, String value, long fallback) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException numberformatexception) {
+            System.out.println(arg + ", invalid value");
+            return fallback;
+        }
+    }
+
+    /**
+     * Returns the parser of the selected modification sites.
+     *
+     * @return parser
+     */
+    public ModParser modParser() {
+
+        if (mod == null && !proteinPilot) {
+            return ModParser.PHOSPHO_Y;
+        }
+
+        String name = proteinPilot
+                ? ModParser.PROTEIN_PILOT_PHOSPHO : "Phosphorylation";
+        String residues = "Y";
+
+        if (mod != null) {
+            int colon = mod.lastIndexOf(':');
+            name = colon < 0 ? mod : mod.substring(0, colon);
+            residues = colon < 0 ? residues : mod.substring(colon + 1);
+        }
+
+        return new ModParser(name, residues, proteinPilot);
+    }
+}
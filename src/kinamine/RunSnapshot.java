@@ -0,0 +1,431 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary snapshot of a run, so a report can be extended with new
+ * rows without processing the old ones again. The snapshot holds the
+ * filtered peptides, the inclusion list in order of addition, the marked
+ * phospho-tyrosine of each accession, the proteins found in the database and
+ * the motifs with their accessions, in order of first appearance. Motifs are
+ * merged in report order, so a run restored from a snapshot and given the
+ * new rows writes the reports of a run over the whole report.
+ * <p>
+ * Regenerated motif sequences, peptide offsets and protein tallies are not
+ * kept; they are derived again from the restored state. Strings are written
+ * once and then referred to by number, and the stream is compressed with
+ * gzip.
+ * <p>
+ * Like the database indexes, the snapshot records the size and CRC32 of the
+ * database it was made from, with the options that change the motifs, and
+ * is only restored while they match. The CRC32 is that of
+ * ProteomeIndex.checksum, read from the proteome index or computed once
+ * while the database is unchanged.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class RunSnapshot {
+
+    /** Magic number, "KMRS". */
+    private static final int MAGIC = 0x4B4D5253;
+
+    /** Format version. */
+    private static final int VERSION = 1;
+
+    /** Snapshot stream. */
+    private final DataOutputStream out;
+    private final DataInputStream in;
+
+    /** Number of each string written or read. */
+    private final Map<String, Integer> numbers = new HashMap<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+
+    private RunSnapshot(DataOutputStream out) {
+        this.out = out;
+        this.in = null;
+    }
+
+    private RunSnapshot(DataInputStream in) {
+        this.out = null;
+        this.in = in;
+    }
+
+    /**
+     * Writes the snapshot of a run.
+     *
+     * @param run run with its motifs generated
+     * @param options options of the run
+     * @param dbPath database of the run
+     * @param path snapshot file
+     * @throws IOException
+     */
+    public static void write(Run run, RunOptions options, String dbPath,
+            String path) throws IOException {
+
+        RunMetrics.Stage stage = run.metrics.start("writeSnapshot");
+
+        long dbSize = new File(dbPath).length();
+        long dbCrc = ProteomeIndex.checksum(dbPath);
+
+        /**
+         * Write to a temporary file, so a failed write keeps the last, at the
+         * fastest compression level.
+         */
+        File file = new File(path);
+        File temp = new File(path + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(
+                        new FileOutputStream(temp), 1 << 16) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                }, 1 << 16))) {
+
+            RunSnapshot snapshot = new RunSnapshot(out);
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dbSize);
+            out.writeLong(dbCrc);
+            snapshot.writeOptions(options);
+
+            /** Peptides, numbered for the motif origins. */
+            Map<Peptide, Integer> peptides = new IdentityHashMap<>();
+            snapshot.writeVarint(run.pepList.size());
+            for (Peptide peptide : run.pepList) {
+                peptides.put(peptide, peptides.size());
+                snapshot.writeBytes(peptide.seq);
+                snapshot.writeString(peptide.ref);
+                snapshot.writeStrings(peptide.id);
+                snapshot.writeInts(peptide.tyrIndex);
+                snapshot.writeInts(peptide.tyrProtIndex);
+            }
+
+            /** Inclusion list and marks. */
+            snapshot.writeStrings(run.reported);
+            snapshot.writeStrings(run.rescued);
+
+            snapshot.writeVarint(run.marks.size());
+            for (Map.Entry<String, Integer> mark : run.marks.entrySet()) {
+                snapshot.writeString(mark.getKey());
+                snapshot.writeVarint(mark.getValue());
+            }
+
+            /** Proteins found in the database. */
+            int found = 0;
+            for (Protein protein : run.database.values()) {
+                if (protein != null) {
+                    found++;
+                }
+            }
+            snapshot.writeVarint(found);
+            for (Map.Entry<String, Protein> entry : run.database.entrySet()) {
+                if (entry.getValue() != null) {
+                    snapshot.writeString(entry.getKey());
+                    snapshot.writeBytes(entry.getValue().seq);
+                }
+            }
+
+            /** Motifs in order of first appearance. */
+            List<Motif> motifs = run.motifsInOrder();
+            snapshot.writeVarint(motifs.size());
+            for (Motif motif : motifs) {
+
+                snapshot.writeBytes(motif.seq);
+                snapshot.writeString(motif.firstRef());
+                snapshot.writeVarint(motif.index);
+                snapshot.writeStrings(motif.addedRefs());
+
+                Map<String, Motif.Origin> origins = motif.origins();
+                snapshot.writeVarint(origins == null ? 0 : origins.size());
+                if (origins != null) {
+                    for (Map.Entry<String, Motif.Origin> origin
+                            : origins.entrySet()) {
+                        snapshot.writeString(origin.getKey());
+                        snapshot.writeVarint(
+                                peptides.get(origin.getValue().peptide));
+                        snapshot.writeVarint(origin.getValue().site);
+                    }
+                }
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        stage.stop();
+    }
+
+    /**
+     * Restores a snapshot into an empty run. The snapshot must have been
+     * written against the same database and with the same options.
+     *
+     * @param run empty run
+     * @param options options of the run
+     * @param dbPath database of the run
+     * @param path snapshot file
+     * @return false if the snapshot does not match the run
+     * @throws IOException
+     */
+    public static boolean restore(Run run, RunOptions options, String dbPath,
+            String path) throws IOException {
+
+        RunMetrics.Stage stage = run.metrics.start("readSnapshot");
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(
+                        new FileInputStream(path), 1 << 16), 1 << 16))) {
+
+            RunSnapshot snapshot = new RunSnapshot(in);
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " is not a run snapshot");
+            }
+
+            if (in.readLong() != new File(dbPath).length()
+                    || in.readLong() != ProteomeIndex.checksum(dbPath)) {
+                System.out.println(path + ", does not match " + dbPath);
+                return false;
+            }
+
+            if (!snapshot.readOptions(options)) {
+                System.out.println(path + ", was written with other options");
+                return false;
+            }
+
+            ArrayList<Peptide> peptides = new ArrayList<>();
+            int count = snapshot.readVarint();
+            for (int i = 0; i < count; i++) {
+                peptides.add(new Peptide(snapshot.readBytes(),
+                        snapshot.readString(), snapshot.readStrings(),
+                        snapshot.readInts(), snapshot.readInts()));
+            }
+
+            List<String> reported = snapshot.readStrings();
+            List<String> rescued = snapshot.readStrings();
+
+            Map<String, Integer> marks = new HashMap<>();
+            count = snapshot.readVarint();
+            for (int i = 0; i < count; i++) {
+                marks.put(snapshot.readString(), snapshot.readVarint());
+            }
+
+            Map<String, CharSequence> proteins = new HashMap<>();
+            count = snapshot.readVarint();
+            for (int i = 0; i < count; i++) {
+                proteins.put(snapshot.readString(), snapshot.readBytes());
+            }
+
+            ArrayList<Motif> motifs = new ArrayList<>();
+            count = snapshot.readVarint();
+            for (int i = 0; i < count; i++) {
+
+                Motif motif = new Motif(snapshot.readBytes(),
+                        snapshot.readString(), snapshot.readVarint(),
+                        new ArrayList<>());
+
+                List<String> added = snapshot.readStrings();
+                if (!added.isEmpty()) {
+                    motif.addRefs(added);
+                }
+
+                int origins = snapshot.readVarint();
+                for (int j = 0; j < origins; j++) {
+                    List<String> ref = new ArrayList<>();
+                    ref.add(snapshot.readString());
+                    motif.addOrigin(ref, peptides.get(snapshot.readVarint()),
+                            snapshot.readVarint());
+                }
+
+                motifs.add(motif);
+            }
+
+            run.restore(peptides, reported, rescued, marks, motifs,
+                    proteins);
+        }
+
+        stage.stop();
+
+        return true;
+    }
+
+    /**
+     * Writes the options that change the motifs of a run.
+     *
+     * @param options
+     * @throws IOException
+     */
+    private void writeOptions(RunOptions options) throws IOException {
+        writeVarint(options.window);
+        writeString(options.mod == null ? "" : options.mod);
+        out.writeBoolean(options.proteinPilot);
+        out.writeBoolean(options.context);
+        out.writeBoolean(options.rescue);
+    }
+
+    /**
+     * Reads the options of a snapshot.
+     *
+     * @param options options of the run
+     * @return true if they are those of the run
+     * @throws IOException
+     */
+    private boolean readOptions(RunOptions options) throws IOException {
+        boolean window = readVarint() == options.window;
+        boolean mod = readString().equals(
+                options.mod == null ? "" : options.mod);
+        return window & mod
+                & in.readBoolean() == options.proteinPilot
+                & in.readBoolean() == options.context
+                & in.readBoolean() == options.rescue;
+    }
+
+    /**
+     * Writes a string, by number once it has been written.
+     *
+     * @param string
+     * @throws IOException
+     */
+    private void writeString(String string) throws IOException {
+
+        Integer number = numbers.get(string);
+        if (number != null) {
+            writeVarint(number + 1);
+            return;
+        }
+
+        numbers.put(string, numbers.size());
+        writeVarint(0);
+        writeBytes(string);
+    }
+
+    /**
+     * Reads a string written by writeString.
+     *
+     * @return string
+     * @throws IOException
+     */
+    private String readString() throws IOException {
+
+        int number = readVarint();
+        if (number > 0) {
+            return strings.get(number - 1);
+        }
+
+        String string = readBytes();
+        strings.add(string);
+
+        return string;
+    }
+
+    private void writeStrings(List<String> list) throws IOException {
+        writeVarint(list.size());
+        for (String string : list) {
+            writeString(string);
+        }
+    }
+
+    private List<String> readStrings() throws IOException {
+
+        int size = readVarint();
+        ArrayList<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readString());
+        }
+
+        return list;
+    }
+
+    /**
+     * Writes a sequence as its length and UTF-8 bytes.
+     *
+     * @param seq
+     * @throws IOException
+     */
+    private void writeBytes(CharSequence seq) throws IOException {
+        byte[] bytes = seq.toString().getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readBytes() throws IOException {
+        byte[] bytes = new byte[readVarint()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeInts(int[] values) throws IOException {
+        writeVarint(values.length);
+        for (int value : values) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+    }
+
+    private int[] readInts() throws IOException {
+
+        int[] values = new int[readVarint()];
+        for (int i = 0; i < values.length; i++) {
+            int value = readVarint();
+            values[i] = (value >>> 1) ^ -(value & 1);
+        }
+
+        return values;
+    }
+
+    /**
+     * Writes an int in 7-bit groups, low group first.
+     *
+     * @param value
+     * @throws IOException
+     */
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private int readVarint() throws IOException {
+
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("malformed snapshot");
+    }
+}
@@ -0,0 +1,358 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scale and regression harness. Generates a workload for each scale of a
+ * ladder, runs the full pipeline on it in a fresh JVM, and records wall time,
+ * peak heap, peak resident set and GC time. Reports are compared against
+ * golden reports, so behavior changes are caught along with performance
+ * regressions.
+ * <p>
+ * With --append, the report of each workload is split in two halves. The
+ * first half is run with a snapshot and the second is appended to it, so the
+ * figures are those of the appended run alone, and its reports are compared
+ * against the golden reports of the whole workload.
+ * <p>
+ * Results are written to scale.csv in the work directory.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class ScaleHarness {
+
+    /** Output group of the runs. */
+    private static final String GROUP = "output";
+
+    /** Reports compared against golden. */
+    private static final String[] REPORTS
+            = {"_Substrates.csv", "_SubBackFreq.csv"};
+
+    /** Prefix of the statistics line printed by a measured run. */
+    private static final String STATS = "scale\t";
+
+    /** Bytes per MB. */
+    private static final long MB = 1 << 20;
+
+    private ScaleHarness() {
+    }
+
+    /**
+     * Runs the harness over a ladder of scales.
+     *
+     * @param args work directory and options
+     * @return false if a run failed or a report differs from golden
+     */
+    public static boolean run(String[] args) {
+
+        File dir = new File(args[0]);
+        RunOptions options = RunOptions.parse(args, 1);
+        dir.mkdirs();
+
+        boolean passed = true;
+
+        try (BufferedWriter results = Files.newBufferedWriter(
+                new File(dir, "scale.csv").toPath(),
+                StandardCharsets.UTF_8)) {
+
+            String header = "proteins,peptides,wall_ms,peak_heap_mb,"
+                    + "peak_rss_mb,gc_ms,gc_count,reports";
+            results.write(header + "\n");
+            System.out.println(header);
+
+            for (String scale : options.ladder.split(",")) {
+
+                String[] size = scale.trim().split("x");
+                int proteins = Integer.parseInt(size[0]);
+                int peptides = Integer.parseInt(size[1]);
+                String name = proteins + "x" + peptides;
+
+                /** Generate the workload once per scale and seed. */
+                String prefix = new File(dir, name + "-" + options.seed)
+                        .getPath();
+                if (!new File(prefix + ".txt").exists()) {
+                    Workload.write(prefix, proteins, peptides, options.seed);
+                }
+
+                File out = new File(dir, name + "-out");
+                out.mkdirs();
+                for (String report : REPORTS) {
+                    new File(out, GROUP + report).delete();
+                }
+
+                String stats = options.append ? append(prefix, out)
+                        : measure(prefix + ".txt", prefix + ".fasta", out);
+                String reports = stats == null
+                        ? "FAILED" : compare(out, name, options);
+
+                String row = name.replace('x', ',') + ","
+                        + (stats == null ? ",,,," : stats) + "," + reports;
+                results.write(row + "\n");
+                System.out.println(row);
+
+                passed &= "OK".equals(reports) || "RECORDED".equals(reports)
+                        || "NO GOLDEN".equals(reports);
+            }
+
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return false;
+        }
+
+        return passed;
+    }
+
+    /**
+     * Runs the first half of the report of a workload with a snapshot, then
+     * appends the second half to it.
+     *
+     * @param prefix workload prefix
+     * @param out output directory
+     * @return statistics of the appended run, or null if a run failed
+     * @throws IOException
+     */
+    private static String append(String prefix, File out)
+            throws IOException {
+
+        String first = prefix + "-first.txt";
+        String rest = prefix + "-rest.txt";
+        if (!new File(rest).exists()) {
+            split(prefix + ".txt", first, rest);
+        }
+
+        File snapshot = new File(out, GROUP + ".snapshot");
+        snapshot.delete();
+
+        if (measure(first, prefix + ".fasta", out,
+                "--snapshot=" + snapshot) == null) {
+            return null;
+        }
+
+        return measure(rest, prefix + ".fasta", out,
+                "--snapshot=" + snapshot, "--append");
+    }
+
+    /**
+     * Splits a report in two halves, each with the header line.
+     *
+     * @param path report
+     * @param first first half
+     * @param rest second half
+     * @throws IOException
+     */
+    private static void split(String path, String first, String rest)
+            throws IOException {
+
+        List<String> lines = Files.readAllLines(Paths.get(path),
+                StandardCharsets.UTF_8);
+        int half = 1 + (lines.size() - 1) / 2;
+
+        List<String> head = new ArrayList<>(lines.subList(0, half));
+        List<String> tail = new ArrayList<>(lines.subList(half,
+                lines.size()));
+        tail.add(0, lines.get(0));
+
+        Files.write(Paths.get(first), head, StandardCharsets.UTF_8);
+        Files.write(Paths.get(rest), tail, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs the pipeline on a workload in a fresh JVM with the options of
+     * this one.
+     *
+     * @param report peptide report
+     * @param fasta database
+     * @param out output directory
+     * @param flags options of the run
+     * @return statistics of the run, or null if it failed
+     * @throws IOException
+     */
+    private static String measure(String report, String fasta, File out,
+            String... flags) throws IOException {
+
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+                .toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean()
+                .getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ScaleHarness.class.getName());
+        command.add(report);
+        command.add(fasta);
+        command.add(out.getPath());
+        command.addAll(Arrays.asList(flags));
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true).start();
+
+        String stats = null;
+        StringBuilder log = new StringBuilder();
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), StandardCharsets.UTF_8))) {
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                int at = line.indexOf(STATS);
+                if (at >= 0) {
+                    stats = line.substring(at + STATS.length());
+                } else {
+                    log.append(line).append('\n');
+                }
+            }
+        }
+
+        try {
+            if (process.waitFor() != 0) {
+                stats = null;
+            }
+        } catch (InterruptedException interruptedexception) {
+            Thread.currentThread().interrupt();
+            stats = null;
+        }
+
+        if (stats == null) {
+            System.out.print(log);
+        }
+
+        return stats;
+    }
+
+    /**
+     * Compares the reports of a run against golden, or records them.
+     *
+     * @param out output directory of the run
+     * @param name scale
+     * @param options
+     * @return OK, DIFF, RECORDED or NO GOLDEN
+     * @throws IOException
+     */
+    private static String compare(File out, String name, RunOptions options)
+            throws IOException {
+
+        if (options.golden == null) {
+            return "NO GOLDEN";
+        }
+
+        File golden = new File(options.golden, name + "-" + options.seed);
+
+        if (options.record) {
+            golden.mkdirs();
+            for (String report : REPORTS) {
+                Files.copy(new File(out, GROUP + report).toPath(),
+                        new File(golden, GROUP + report).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            return "RECORDED";
+        }
+
+        if (!golden.isDirectory()) {
+            return "NO GOLDEN";
+        }
+
+        for (String report : REPORTS) {
+            File expected = new File(golden, GROUP + report);
+            File actual = new File(out, GROUP + report);
+            if (!actual.exists() || !Arrays.equals(
+                    Files.readAllBytes(expected.toPath()),
+                    Files.readAllBytes(actual.toPath()))) {
+                System.out.println(actual + ", differs from " + expected);
+                return "DIFF";
+            }
+        }
+
+        return "OK";
+    }
+
+    /**
+     * Measured run of the pipeline. Prints the statistics line read by the
+     * harness.
+     *
+     * @param args peptide report, database, output directory and options
+     */
+    public static void main(String[] args) {
+
+        long start = System.nanoTime();
+
+        ArrayList<String> run = new ArrayList<>(Arrays.asList(
+                args[0], args[1], args[2], "0.5", GROUP));
+        run.addAll(Arrays.asList(args).subList(3, args.length));
+
+        boolean done = KinaMineDriver.run(run.toArray(new String[0]), false);
+
+        long wall = (System.nanoTime() - start) / 1000000;
+
+        long heap = 0;
+        for (MemoryPoolMXBean pool
+                : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        long gcTime = 0;
+        long gcCount = 0;
+        for (GarbageCollectorMXBean gc
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcTime += Math.max(0, gc.getCollectionTime());
+            gcCount += Math.max(0, gc.getCollectionCount());
+        }
+
+        System.out.println();
+        System.out.println(STATS + wall + "," + heap / MB + "," + peakRss()
+                + "," + gcTime + "," + gcCount);
+
+        System.exit(done ? 0 : 1);
+    }
+
+    /**
+     * Reads the peak resident set of this process.
+     *
+     * @return peak resident set in MB, or -1 if unknown
+     */
+    private static long peakRss() {
+
+        try (BufferedReader in = new BufferedReader(
+                new FileReader("/proc/self/status"))) {
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("VmHWM:")) {
+                    String kb = line.substring(6).replace("kB", "").trim();
+                    return Long.parseLong(kb) / 1024;
+                }
+            }
+
+        } catch (IOException | NumberFormatException exception) {
+            return -1;
+        }
+
+        return -1;
+    }
+}
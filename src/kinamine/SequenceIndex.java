@@ -0,0 +1,704 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * FM-index of every sequence of a FASTA database. Finds all the entries
+ * containing a peptide with a backward search in time linear in the length
+ * of the peptide, so peptides reported without accessions can be given
+ * their parent proteins.
+ * <p>
+ * The sequences are joined into one text, each followed by a separator. The
+ * index keeps the Burrows-Wheeler transform of the text, one byte per
+ * residue, with symbol counts every 128 rows and the suffix array sampled
+ * every 32 residues of text, about 2 bytes per residue in all.
+ * <p>
+ * Like the proteome index, the file records the size and CRC32 of the FASTA
+ * it was built from and is only used while both still match. The CRC32 of
+ * the FASTA is the cached one of ProteomeIndex.checksum, so it is not read
+ * again while unchanged.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class SequenceIndex {
+
+    /** File extension of an index next to its FASTA. */
+    public static final String EXTENSION = ".kms";
+
+    /** Magic number, "KMSQ". */
+    private static final int MAGIC = 0x4B4D5351;
+
+    /** Format version. */
+    private static final int VERSION = 1;
+
+    /** Symbols: end of text, separator, and the letters A to Z. */
+    private static final int SIGMA = 28;
+
+    /** Symbol of the separator following each sequence. */
+    private static final byte SEPARATOR = 1;
+
+    /** Rows between symbol count checkpoints. */
+    private static final int BLOCK = 128;
+
+    /** Residues of text between suffix array samples. */
+    private static final int STEP = 32;
+
+    /** Header id of each entry. */
+    private final String[] ids;
+
+    /** Start of each entry in the text. */
+    private final int[] starts;
+
+    /** Number of symbols smaller than each symbol. */
+    private final int[] before;
+
+    /** Burrows-Wheeler transform of the text. */
+    private final byte[] bwt;
+
+    /** Count of each symbol in the transform before each checkpoint. */
+    private final int[] counts;
+
+    /** Rows whose suffix is sampled, and the samples before each word. */
+    private final long[] sampled;
+    private final int[] ranks;
+
+    /** Text position of each sampled row, in row order. */
+    private final int[] samples;
+
+    /** Size and CRC32 of the indexed FASTA. */
+    private final long fastaSize;
+    private final long fastaCrc;
+
+    private SequenceIndex(String[] ids, int[] starts, int[] before,
+            byte[] bwt, int[] counts, long[] sampled, int[] ranks,
+            int[] samples, long fastaSize, long fastaCrc) {
+        this.ids = ids;
+        this.starts = starts;
+        this.before = before;
+        this.bwt = bwt;
+        this.counts = counts;
+        this.sampled = sampled;
+        this.ranks = ranks;
+        this.samples = samples;
+        this.fastaSize = fastaSize;
+        this.fastaCrc = fastaCrc;
+    }
+
+    /**
+     * Builds the index of the sequences of a FASTA database.
+     *
+     * @param fastaPath FASTA database
+     * @return index
+     * @throws IOException
+     */
+    public static SequenceIndex build(String fastaPath) throws IOException {
+
+        ArrayList<String> ids = new ArrayList<>();
+        ArrayList<String> seqs = new ArrayList<>();
+        long[] length = new long[1];
+
+        FastaReader.read(fastaPath, id -> true, (id, seq) -> {
+            ids.add(id);
+            seqs.add(seq);
+            length[0] += seq.length() + 1;
+        });
+
+        if (length[0] + 1 > Integer.MAX_VALUE) {
+            throw new IOException(fastaPath + " is too large to index");
+        }
+
+        /** Text of the sequences, each followed by a separator. */
+        int n = (int) length[0] + 1;
+        int[] text = new int[n];
+        int[] starts = new int[seqs.size()];
+        int pos = 0;
+        for (int i = 0; i < seqs.size(); i++) {
+            String seq = seqs.get(i);
+            starts[i] = pos;
+            for (int j = 0; j < seq.length(); j++) {
+                text[pos++] = code(seq.charAt(j));
+            }
+            text[pos++] = SEPARATOR;
+        }
+        seqs.clear();
+
+        /** The suffix array is the long part, skip it once cancelled. */
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException(fastaPath
+                    + ", index interrupted");
+        }
+
+        int[] sa = new int[n];
+        suffixArray(text, sa, n, SIGMA);
+
+        /** Transform, counts and samples in one pass over the rows. */
+        byte[] bwt = new byte[n];
+        int[] counts = new int[(n / BLOCK + 1) * SIGMA];
+        long[] sampled = new long[(n + 63) / 64];
+        int[] ranks = new int[sampled.length + 1];
+        int[] samples = new int[(n - 1) / STEP + 1];
+        int[] running = new int[SIGMA];
+        int taken = 0;
+
+        for (int row = 0; row < n; row++) {
+
+            if (row % BLOCK == 0) {
+                System.arraycopy(running, 0, counts, row / BLOCK * SIGMA,
+                        SIGMA);
+            }
+
+            int suffix = sa[row];
+            byte symbol = (byte) (suffix == 0 ? 0 : text[suffix - 1]);
+            bwt[row] = symbol;
+            running[symbol]++;
+
+            if (suffix % STEP == 0) {
+                sampled[row >>> 6] |= 1L << row;
+                samples[taken++] = suffix;
+            }
+        }
+        if (n % BLOCK == 0) {
+            System.arraycopy(running, 0, counts, n / BLOCK * SIGMA, SIGMA);
+        }
+
+        for (int w = 0; w < sampled.length; w++) {
+            ranks[w + 1] = ranks[w] + Long.bitCount(sampled[w]);
+        }
+
+        int[] before = new int[SIGMA + 1];
+        for (int c = 0; c < SIGMA; c++) {
+            before[c + 1] = before[c] + running[c];
+        }
+
+        return new SequenceIndex(ids.toArray(new String[0]), starts, before,
+                bwt, counts, sampled, ranks, samples,
+                new File(fastaPath).length(),
+                ProteomeIndex.checksum(fastaPath));
+    }
+
+    /**
+     * Returns the symbol of a residue.
+     *
+     * @param c residue
+     * @return symbol, or the separator if c is not a letter
+     */
+    private static int code(char c) {
+
+        if (c >= 'a' && c <= 'z') {
+            c -= 'a' - 'A';
+        }
+
+        return c >= 'A' && c <= 'Z' ? c - 'A' + 2 : SEPARATOR;
+    }
+
+    /**
+     * Sorts the suffixes of a text by induced sorting (SA-IS), in time and
+     * space linear in its length. The last symbol must be 0 and occur only
+     * there.
+     *
+     * @param text symbols of the text
+     * @param sa suffix array to fill
+     * @param n length of the text
+     * @param k number of symbols
+     */
+    private static void suffixArray(int[] text, int[] sa, int n, int k) {
+
+        if (n == 1) {
+            sa[0] = 0;
+            return;
+        }
+
+        /** Type of each suffix: S if smaller than the next, else L. */
+        boolean[] small = new boolean[n];
+        small[n - 1] = true;
+        for (int i = n - 2; i >= 0; i--) {
+            small[i] = text[i] < text[i + 1]
+                    || (text[i] == text[i + 1] && small[i + 1]);
+        }
+
+        int[] bucket = new int[k];
+
+        /** Sort the leftmost S suffixes (LMS) by their substrings. */
+        buckets(text, bucket, n, k, true);
+        Arrays.fill(sa, 0, n, -1);
+        for (int i = 1; i < n; i++) {
+            if (isLms(small, i)) {
+                sa[--bucket[text[i]]] = i;
+            }
+        }
+        induce(text, sa, small, bucket, n, k);
+
+        /** Compact the sorted LMS suffixes and name their substrings. */
+        int lms = 0;
+        for (int i = 0; i < n; i++) {
+            if (isLms(small, sa[i])) {
+                sa[lms++] = sa[i];
+            }
+        }
+        Arrays.fill(sa, lms, n, -1);
+
+        int names = 0;
+        int prev = -1;
+        for (int i = 0; i < lms; i++) {
+
+            int pos = sa[i];
+            boolean differs = false;
+
+            for (int d = 0; d < n; d++) {
+                if (prev < 0 || text[pos + d] != text[prev + d]
+                        || small[pos + d] != small[prev + d]) {
+                    differs = true;
+                    break;
+                }
+                if (d > 0 && (isLms(small, pos + d)
+                        || isLms(small, prev + d))) {
+                    break;
+                }
+            }
+
+            if (differs) {
+                names++;
+                prev = pos;
+            }
+            sa[lms + pos / 2] = names - 1;
+        }
+
+        /** Reduced text of the names, in text order. */
+        int[] reduced = new int[lms];
+        for (int i = n - 1, j = lms - 1; i >= lms; i--) {
+            if (sa[i] >= 0) {
+                reduced[j--] = sa[i];
+            }
+        }
+
+        /** Sort the reduced text, recursing while names repeat. */
+        int[] order = new int[lms];
+        if (names < lms) {
+            suffixArray(reduced, order, lms, names);
+        } else {
+            for (int i = 0; i < lms; i++) {
+                order[reduced[i]] = i;
+            }
+        }
+
+        /** Place the sorted LMS suffixes and induce the rest. */
+        for (int i = 1, j = 0; i < n; i++) {
+            if (isLms(small, i)) {
+                reduced[j++] = i;
+            }
+        }
+        buckets(text, bucket, n, k, true);
+        Arrays.fill(sa, 0, n, -1);
+        for (int i = lms - 1; i >= 0; i--) {
+            int pos = reduced[order[i]];
+            sa[--bucket[text[pos]]] = pos;
+        }
+        induce(text, sa, small, bucket, n, k);
+    }
+
+    /**
+     * Determine if a suffix is a leftmost S suffix.
+     *
+     * @param small
+     * @param i
+     * @return
+     */
+    private static boolean isLms(boolean[] small, int i) {
+        return i > 0 && small[i] && !small[i - 1];
+    }
+
+    /**
+     * Sets the start or end of the bucket of each symbol.
+     *
+     * @param text
+     * @param bucket
+     * @param n
+     * @param k
+     * @param end
+     */
+    private static void buckets(int[] text, int[] bucket, int n, int k,
+            boolean end) {
+
+        Arrays.fill(bucket, 0, k, 0);
+        for (int i = 0; i < n; i++) {
+            bucket[text[i]]++;
+        }
+
+        int sum = 0;
+        for (int c = 0; c < k; c++) {
+            sum += bucket[c];
+            bucket[c] = end ? sum : sum - bucket[c];
+        }
+    }
+
+    /**
+     * Induces the order of the L suffixes from the placed S suffixes, then
+     * of the S suffixes from the L suffixes.
+     *
+     * @param text
+     * @param sa
+     * @param small
+     * @param bucket
+     * @param n
+     * @param k
+     */
+    private static void induce(int[] text, int[] sa, boolean[] small,
+            int[] bucket, int n, int k) {
+
+        buckets(text, bucket, n, k, false);
+        for (int i = 0; i < n; i++) {
+            int j = sa[i] - 1;
+            if (j >= 0 && !small[j]) {
+                sa[bucket[text[j]]++] = j;
+            }
+        }
+
+        buckets(text, bucket, n, k, true);
+        for (int i = n - 1; i >= 0; i--) {
+            int j = sa[i] - 1;
+            if (j >= 0 && small[j]) {
+                sa[--bucket[text[j]]] = j;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of occurrences of a symbol in the transform before
+     * a row.
+     *
+     * @param symbol
+     * @param row
+     * @return count
+     */
+    private int occ(int symbol, int row) {
+
+        int block = row / BLOCK;
+        int count = counts[block * SIGMA + symbol];
+        for (int i = block * BLOCK; i < row; i++) {
+            if (bwt[i] == symbol) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the text position of the suffix of a row, walking back through
+     * the text to the nearest sample.
+     *
+     * @param row
+     * @return position
+     */
+    private int locate(int row) {
+
+        int steps = 0;
+
+        while ((sampled[row >>> 6] & (1L << row)) == 0) {
+            int symbol = bwt[row];
+            row = before[symbol] + occ(symbol, row);
+            steps++;
+        }
+
+        long word = sampled[row >>> 6] & ((1L << row) - 1);
+        return samples[ranks[row >>> 6] + Long.bitCount(word)] + steps;
+    }
+
+    /**
+     * Finds the entries containing a peptide.
+     *
+     * @param peptide
+     * @return distinct entries in ascending order, empty if none
+     */
+    public int[] entries(CharSequence peptide) {
+
+        int lo = 0;
+        int hi = bwt.length;
+
+        /** Backward search, one symbol at a time. */
+        for (int i = peptide.length() - 1; i >= 0 && lo < hi; i--) {
+            int symbol = code(peptide.charAt(i));
+            if (symbol == SEPARATOR) {
+                return new int[0];
+            }
+            lo = before[symbol] + occ(symbol, lo);
+            hi = before[symbol] + occ(symbol, hi);
+        }
+
+        if (peptide.length() == 0 || lo >= hi) {
+            return new int[0];
+        }
+
+        int[] found = new int[hi - lo];
+        for (int row = lo; row < hi; row++) {
+            int entry = Arrays.binarySearch(starts, locate(row));
+            found[row - lo] = entry < 0 ? -entry - 2 : entry;
+        }
+
+        Arrays.sort(found);
+        int distinct = 0;
+        for (int i = 0; i < found.length; i++) {
+            if (i == 0 || found[i] != found[i - 1]) {
+                found[distinct++] = found[i];
+            }
+        }
+
+        return Arrays.copyOf(found, distinct);
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the header id of an entry.
+     *
+     * @param i entry
+     * @return header id
+     */
+    public String id(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Writes the index to a file.
+     *
+     * @param indexPath
+     * @throws IOException
+     */
+    public void write(String indexPath) throws IOException {
+
+        int idBytes = 0;
+        byte[][] names = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            names[i] = ids[i].getBytes(StandardCharsets.UTF_8);
+            idBytes += 4 + names[i].length;
+        }
+
+        try (FileOutputStream out = new FileOutputStream(indexPath);
+                FileChannel channel = out.getChannel()) {
+
+            ByteBuffer header = buffer(48 + idBytes);
+            header.putInt(MAGIC).putInt(VERSION).putLong(fastaSize)
+                    .putLong(fastaCrc).putInt(ids.length).putInt(bwt.length)
+                    .putInt(counts.length).putInt(sampled.length)
+                    .putInt(samples.length).putInt(0);
+            for (byte[] name : names) {
+                header.putInt(name.length).put(name);
+            }
+            flush(channel, header);
+
+            writeInts(channel, starts);
+            writeInts(channel, before);
+            flush(channel, ByteBuffer.wrap(bwt));
+            writeInts(channel, counts);
+            ByteBuffer words = buffer(8 * sampled.length);
+            words.asLongBuffer().put(sampled);
+            flush(channel, words);
+            writeInts(channel, ranks);
+            writeInts(channel, samples);
+        }
+    }
+
+    /**
+     * Reads an index file.
+     *
+     * @param indexPath
+     * @return index
+     * @throws IOException if the file is not a valid index
+     */
+    public static SequenceIndex open(String indexPath) throws IOException {
+
+        try (FileInputStream in = new FileInputStream(indexPath);
+                FileChannel channel = in.getChannel()) {
+
+            ByteBuffer header = read(channel, 48);
+            if (header.getInt() != MAGIC
+                    || header.getInt() != VERSION) {
+                throw new IOException(indexPath + " is not a sequence index");
+            }
+
+            long fastaSize = header.getLong();
+            long fastaCrc = header.getLong();
+            String[] ids = new String[header.getInt()];
+            int n = header.getInt();
+            int[] counts = new int[header.getInt()];
+            long[] sampled = new long[header.getInt()];
+            int[] samples = new int[header.getInt()];
+
+            for (int i = 0; i < ids.length; i++) {
+                byte[] name = new byte[read(channel, 4).getInt()];
+                read(channel, name.length).get(name);
+                ids[i] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            int[] starts = readInts(channel, ids.length);
+            int[] before = readInts(channel, SIGMA + 1);
+            byte[] bwt = new byte[n];
+            read(channel, n).get(bwt);
+            readInts(channel, counts);
+            read(channel, 8 * sampled.length).asLongBuffer().get(sampled);
+            int[] ranks = readInts(channel, sampled.length + 1);
+            readInts(channel, samples);
+
+            return new SequenceIndex(ids, starts, before, bwt, counts,
+                    sampled, ranks, samples, fastaSize, fastaCrc);
+
+        } catch (RuntimeException exception) {
+            throw new IOException(indexPath + " is not a sequence index");
+        }
+    }
+
+    /**
+     * Finds a valid index for a FASTA database next to the FASTA.
+     *
+     * @param fastaPath
+     * @return index, or null if none is present or it is stale
+     */
+    public static SequenceIndex find(String fastaPath) {
+
+        try {
+            File fasta = new File(fastaPath);
+            File index = new File(fastaPath + EXTENSION);
+            if (!index.exists()) {
+                index = new File(fasta.getCanonicalPath() + EXTENSION);
+            }
+            if (!index.exists()) {
+                return null;
+            }
+
+            SequenceIndex sequences = open(index.getPath());
+
+            if (sequences.fastaSize != fasta.length()
+                    || sequences.fastaCrc
+                    != ProteomeIndex.checksum(fastaPath)) {
+                System.out.println(index.getPath()
+                        + ", does not match " + fastaPath);
+                return null;
+            }
+
+            return sequences;
+
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Allocates a little-endian buffer.
+     *
+     * @param size
+     * @return buffer
+     */
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the remainder of a buffer.
+     *
+     * @param channel
+     * @param buffer
+     * @throws IOException
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+
+        if (buffer.position() > 0) {
+            buffer.flip();
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes an int array.
+     *
+     * @param channel
+     * @param values
+     * @throws IOException
+     */
+    private static void writeInts(FileChannel channel, int[] values)
+            throws IOException {
+
+        ByteBuffer bytes = buffer(4 * values.length);
+        bytes.asIntBuffer().put(values);
+        flush(channel, bytes);
+    }
+
+    /**
+     * Reads a number of bytes.
+     *
+     * @param channel
+     * @param size
+     * @return buffer positioned at the bytes
+     * @throws IOException at end of file
+     */
+    private static ByteBuffer read(FileChannel channel, int size)
+            throws IOException {
+
+        ByteBuffer bytes = buffer(size);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes) < 0) {
+                throw new EOFException();
+            }
+        }
+        bytes.flip();
+
+        return bytes;
+    }
+
+    /**
+     * Reads an int array.
+     *
+     * @param channel
+     * @param length
+     * @return values
+     * @throws IOException
+     */
+    private static int[] readInts(FileChannel channel, int length)
+            throws IOException {
+        return readInts(channel, new int[length]);
+    }
+
+    /**
+     * Reads into an int array.
+     *
+     * @param channel
+     * @param values
+     * @return values
+     * @throws IOException
+     */
+    private static int[] readInts(FileChannel channel, int[] values)
+            throws IOException {
+
+        read(channel, 4 * values.length).asIntBuffer().get(values);
+        return values;
+    }
+}
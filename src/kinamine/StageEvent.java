@@ -0,0 +1,154 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JFR event of a run stage (kinamine.Stage), with the stage name, the CPU
+ * time and the allocation of its thread. The project targets Java 8, which
+ * has no jdk.jfr API, so the event type is built through reflection with
+ * jdk.jfr.EventFactory, available from JDK 11. On older JVMs no events are
+ * emitted.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+final class StageEvent {
+
+    /** Factory of the event type, or null if JFR is not available. */
+    private static final Object FACTORY;
+
+    /** Methods of jdk.jfr.EventFactory and jdk.jfr.Event. */
+    private static final Method NEW_EVENT;
+    private static final Method SET;
+    private static final Method BEGIN;
+    private static final Method END;
+    private static final Method COMMIT;
+
+    static {
+
+        Object factory = null;
+        Method newEvent = null;
+        Method set = null;
+        Method begin = null;
+        Method end = null;
+        Method commit = null;
+
+        try {
+
+            Class<?> factoryType = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventType = Class.forName("jdk.jfr.Event");
+            Class<?> elementType = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> fieldType = Class.forName("jdk.jfr.ValueDescriptor");
+
+            Constructor<?> element = elementType.getConstructor(Class.class,
+                    Object.class);
+            Constructor<?> field = fieldType.getConstructor(Class.class,
+                    String.class, List.class);
+
+            List<Object> annotations = Arrays.asList(
+                    element.newInstance(Class.forName("jdk.jfr.Name"),
+                            "kinamine.Stage"),
+                    element.newInstance(Class.forName("jdk.jfr.Label"),
+                            "KinaMine Stage"),
+                    element.newInstance(Class.forName("jdk.jfr.Category"),
+                            new String[]{"KinaMine"}));
+
+            List<Object> fields = new ArrayList<>();
+            fields.add(field.newInstance(String.class, "stage",
+                    Collections.singletonList(element.newInstance(
+                            Class.forName("jdk.jfr.Label"), "Stage"))));
+            fields.add(field.newInstance(long.class, "cpu", Arrays.asList(
+                    element.newInstance(Class.forName("jdk.jfr.Label"),
+                            "CPU Time"),
+                    element.newInstance(Class.forName("jdk.jfr.Timespan"),
+                            "NANOSECONDS"))));
+            fields.add(field.newInstance(long.class, "allocated",
+                    Arrays.asList(
+                            element.newInstance(
+                                    Class.forName("jdk.jfr.Label"),
+                                    "Allocated"),
+                            element.newInstance(
+                                    Class.forName("jdk.jfr.DataAmount"),
+                                    "BYTES"))));
+
+            factory = factoryType.getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, fields);
+            newEvent = factoryType.getMethod("newEvent");
+            set = eventType.getMethod("set", int.class, Object.class);
+            begin = eventType.getMethod("begin");
+            end = eventType.getMethod("end");
+            commit = eventType.getMethod("commit");
+
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            System.out.println("JFR events, not available on this JVM");
+            factory = null;
+        }
+
+        FACTORY = factory;
+        NEW_EVENT = newEvent;
+        SET = set;
+        BEGIN = begin;
+        END = end;
+        COMMIT = commit;
+    }
+
+    /** Event being recorded. */
+    private final Object event;
+
+    private StageEvent(Object event) {
+        this.event = event;
+    }
+
+    /**
+     * Begins an event for a stage.
+     *
+     * @param stage
+     * @return event, or null if JFR is not available
+     */
+    static StageEvent begin(String stage) {
+
+        if (FACTORY == null) {
+            return null;
+        }
+
+        try {
+            Object event = NEW_EVENT.invoke(FACTORY);
+            SET.invoke(event, 0, stage);
+            BEGIN.invoke(event);
+            return new StageEvent(event);
+        } catch (ReflectiveOperationException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Ends and commits the event.
+     *
+     * @param cpu CPU time of the stage
+     * @param allocated bytes allocated by the stage
+     */
+    void commit(long cpu, long allocated) {
+        try {
+            SET.invoke(event, 1, cpu);
+            SET.invoke(event, 2, allocated);
+            END.invoke(event);
+            COMMIT.invoke(event);
+        } catch (ReflectiveOperationException exception) {
+            /** The stage is still in the metrics sidecar. */
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Position-specific background of tyrosine-centred windows: the count of
+ * each amino acid at each position of the windows around every tyrosine of
+ * a set of proteins. Windows are truncated at either end of a protein, so
+ * each position has its own total. Property counts are derived from the
+ * residue counts.
+ * <p>
+ * Proteins are counted in one pass over their sequences, in parallel with a
+ * matrix per worker that are summed once done.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class WindowMatrix {
+
+    /** Number of proteins from which they are counted in parallel. */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    /** Residues on each side of the tyrosine. */
+    final int window;
+
+    /** Count of each residue code at each position, position-major. */
+    private final long[] counts;
+
+    /** Number of windows and of proteins counted. */
+    private long windows;
+    private long proteins;
+
+    /** Sequence being counted. */
+    private byte[] buffer = new byte[0];
+
+    /**
+     * Constructs an empty matrix.
+     *
+     * @param window residues on each side of the tyrosine
+     */
+    public WindowMatrix(int window) {
+        this.window = window;
+        this.counts = new long[(2 * window + 1) * AminoAcid.ACIDS.length];
+    }
+
+    /**
+     * Counts the windows of a list of sequences.
+     *
+     * @param seqs
+     * @param window residues on each side of the tyrosine
+     * @return matrix
+     */
+    public static WindowMatrix of(List<? extends CharSequence> seqs,
+            int window) {
+        return of(seqs.size(), seqs::get, window);
+    }
+
+    /**
+     * Counts the windows of every entry of a database.
+     *
+     * @param proteome
+     * @param window residues on each side of the tyrosine
+     * @return matrix
+     */
+    public static WindowMatrix of(ProteinSource proteome, int window) {
+        return of(proteome.size(), proteome::sequence, window);
+    }
+
+    /**
+     * Counts the windows of numbered sequences.
+     *
+     * @param size number of sequences
+     * @param seqs sequence of each number
+     * @param window residues on each side of the tyrosine
+     * @return matrix
+     */
+    private static WindowMatrix of(int size,
+            IntFunction<? extends CharSequence> seqs, int window) {
+
+        IntStream entries = IntStream.range(0, size);
+        if (size >= PARALLEL_THRESHOLD) {
+            entries = entries.parallel();
+        }
+
+        return entries.collect(() -> new WindowMatrix(window),
+                (matrix, i) -> matrix.add(seqs.apply(i)),
+                WindowMatrix::addAll);
+    }
+
+    /**
+     * Counts the window around each tyrosine of a sequence. The sequence is
+     * first copied into a buffer of the matrix, in bulk if it is packed.
+     *
+     * @param seq
+     */
+    public void add(CharSequence seq) {
+
+        int length = seq.length();
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, 2 * buffer.length)];
+        }
+
+        if (seq instanceof PackedProteome.Residues) {
+            ((PackedProteome.Residues) seq).copyTo(buffer);
+        } else {
+            for (int i = 0; i < length; i++) {
+                buffer[i] = (byte) seq.charAt(i);
+            }
+        }
+
+        add(buffer, length);
+    }
+
+    /**
+     * Counts the window around each tyrosine of a sequence of bytes.
+     *
+     * @param seq
+     * @param length length of the sequence
+     */
+    private void add(byte[] seq, int length) {
+
+        int acids = AminoAcid.ACIDS.length;
+
+        for (int i = 0; i < length; i++) {
+
+            if (seq[i] != 'Y') {
+                continue;
+            }
+
+            int start = Math.max(0, i - window);
+            int end = Math.min(length, i + window + 1);
+
+            for (int j = start; j < end; j++) {
+                int code = AminoAcid.code((char) (seq[j] & 0xFF));
+                if (code >= 0) {
+                    counts[(j - i + window) * acids + code]++;
+                }
+            }
+
+            windows++;
+        }
+
+        proteins++;
+    }
+
+    /**
+     * Adds the counts of another matrix of the same window.
+     *
+     * @param other
+     */
+    public void addAll(WindowMatrix other) {
+
+        for (int k = 0; k < counts.length; k++) {
+            counts[k] += other.counts[k];
+        }
+
+        windows += other.windows;
+        proteins += other.proteins;
+    }
+
+    /**
+     * @param pos position from the tyrosine, -window to window
+     * @param code residue code
+     * @return count of the residue at the position
+     */
+    public long count(int pos, int code) {
+        return counts[(pos + window) * AminoAcid.ACIDS.length + code];
+    }
+
+    /**
+     * @param pos position from the tyrosine, -window to window
+     * @param prop index of property in AminoAcid.PROPS
+     * @return count of residues with the property at the position
+     */
+    public long prop(int pos, int prop) {
+
+        long count = 0;
+
+        for (int code = 0; code < AminoAcid.ACIDS.length; code++) {
+            if (AminoAcid.hasProp(code, prop)) {
+                count += count(pos, code);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @param pos position from the tyrosine, -window to window
+     * @return count of amino acids at the position
+     */
+    public long total(int pos) {
+
+        long count = 0;
+
+        for (int code = 0; code < AminoAcid.ACIDS.length; code++) {
+            count += count(pos, code);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return number of windows counted
+     */
+    public long windows() {
+        return windows;
+    }
+
+    /**
+     * @return number of proteins counted
+     */
+    public long proteins() {
+        return proteins;
+    }
+}
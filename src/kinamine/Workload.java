@@ -0,0 +1,284 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic workload of reproducible inputs: a UniProt-style FASTA database
+ * and a PeptideShaker-style peptide report of peptides cut from it. The same
+ * seed always gives the same files.
+ * <p>
+ * Report rows carry one to several accessions (some of isoforms, some absent
+ * from the database, some rows without any), phospho-tyrosine modifications
+ * with one or more sites mixed with other modifications, and confidence
+ * scores on both sides of the FDR threshold.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public final class Workload {
+
+    /** Amino acids in code order. */
+    private static final String ACIDS = "ACDEFGHIKLMNPQRSTVWY";
+
+    /** Cumulative human proteome frequencies of ACIDS, in percent. */
+    private static final double[] CUMULATIVE;
+
+    static {
+        double[] freqs = {7.0, 2.3, 4.7, 7.1, 3.7, 6.6, 2.6, 4.3, 5.7, 10.0,
+            2.1, 3.6, 6.3, 4.8, 5.6, 8.3, 5.4, 6.0, 1.2, 2.7};
+        CUMULATIVE = new double[freqs.length];
+        double sum = 0;
+        for (double freq : freqs) {
+            sum += freq;
+        }
+        double acc = 0;
+        for (int i = 0; i < freqs.length; i++) {
+            acc += freqs[i];
+            CUMULATIVE[i] = acc / sum;
+        }
+    }
+
+    /** Confidence scores of report rows. */
+    private static final String[] CONFIDENCE
+            = {"100.0", "100.0", "99.8", "95.5", "80.1", "50.2", "0.3", "0.0"};
+
+    private Workload() {
+    }
+
+    /**
+     * Writes prefix.fasta and prefix.txt.
+     *
+     * @param prefix path prefix of the files
+     * @param proteins number of database entries
+     * @param peptides number of report rows
+     * @param seed
+     * @throws IOException
+     */
+    public static void write(String prefix, int proteins, int peptides,
+            long seed) throws IOException {
+
+        Random random = new Random(seed);
+        ArrayList<String> accs = new ArrayList<>(proteins);
+        ArrayList<String> seqs = new ArrayList<>(proteins);
+
+        try (BufferedWriter out = Files.newBufferedWriter(
+                Paths.get(prefix + ".fasta"), StandardCharsets.US_ASCII)) {
+
+            for (int i = 0; i < proteins; i++) {
+
+                String acc = accession(i);
+                String seq = sequence(random);
+
+                accs.add(acc);
+                seqs.add(seq);
+
+                String db = random.nextInt(4) == 0 ? "tr" : "sp";
+                entry(out, ">" + db + "|" + acc + "|PROT" + i
+                        + "_HUMAN Protein " + i
+                        + " OS=Homo sapiens OX=9606 GN=GENE" + i, seq);
+
+                /** Some entries have an isoform of a shortened sequence. */
+                if (random.nextInt(20) == 0) {
+                    entry(out, ">" + db + "|" + acc + "-2|PROT" + i
+                            + "_HUMAN Isoform 2 of Protein " + i
+                            + " OS=Homo sapiens OX=9606 GN=GENE" + i,
+                            seq.substring(random.nextInt(seq.length() / 4)));
+                }
+            }
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(
+                Paths.get(prefix + ".txt"), StandardCharsets.US_ASCII)) {
+
+            out.write("\tProtein(s)\tSequence\tVariable Modifications"
+                    + "\tModified Sites\tPrecursor m/z\tSpectrum Counting NSAF"
+                    + "\t#Validated PSMs\tScore\tConfidence [%]\n");
+
+            for (int r = 0; r < peptides; r++) {
+                row(out, random, r, accs, seqs);
+            }
+        }
+    }
+
+    /**
+     * Returns the accession of an entry.
+     *
+     * @param i entry
+     * @return accession
+     */
+    private static String accession(int i) {
+        return (char) ('O' + i % 3)
+                + String.format(Locale.ROOT, "%05d", i / 3);
+    }
+
+    /**
+     * Draws a protein sequence of realistic length and composition.
+     *
+     * @param random
+     * @return sequence
+     */
+    private static String sequence(Random random) {
+
+        /** Lengths are roughly log-normal around 400 residues. */
+        int len = (int) Math.max(50,
+                Math.min(5000, Math.exp(6.0 + 0.6 * random.nextGaussian())));
+
+        char[] seq = new char[len];
+        seq[0] = 'M';
+        for (int i = 1; i < len; i++) {
+            double x = random.nextDouble();
+            int code = 0;
+            while (code < CUMULATIVE.length - 1 && CUMULATIVE[code] < x) {
+                code++;
+            }
+            seq[i] = ACIDS.charAt(code);
+        }
+
+        return new String(seq);
+    }
+
+    /**
+     * Writes a FASTA entry in lines of 60 residues.
+     *
+     * @param out
+     * @param header
+     * @param seq
+     * @throws IOException
+     */
+    private static void entry(BufferedWriter out, String header, String seq)
+            throws IOException {
+
+        out.write(header);
+        out.write('\n');
+        for (int i = 0; i < seq.length(); i += 60) {
+            out.write(seq, i, Math.min(60, seq.length() - i));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Writes a report row for a peptide cut from a random protein.
+     *
+     * @param out
+     * @param random
+     * @param r row number
+     * @param accs
+     * @param seqs
+     * @throws IOException
+     */
+    private static void row(BufferedWriter out, Random random, int r,
+            ArrayList<String> accs, ArrayList<String> seqs)
+            throws IOException {
+
+        int p = random.nextInt(accs.size());
+        String seq = seqs.get(p);
+
+        /** Peptides of 6 to 30 residues, preferably holding a tyrosine. */
+        int len = Math.min(seq.length(), 6 + random.nextInt(25));
+        int start = random.nextInt(seq.length() - len + 1);
+        for (int tries = 0; tries < 4
+                && seq.indexOf('Y', start) - start >= len; tries++) {
+            start = random.nextInt(seq.length() - len + 1);
+        }
+        String pep = seq.substring(start, start + len);
+
+        /** Accessions: shared peptides, isoforms and unknown accessions. */
+        StringBuilder ids = new StringBuilder(accs.get(p));
+        int shared = random.nextInt(10) == 0 ? 1 + random.nextInt(3) : 0;
+        for (int i = 0; i < shared; i++) {
+            ids.append(", ").append(accs.get(random.nextInt(accs.size())));
+        }
+        if (random.nextInt(50) == 0) {
+            ids.append(", ").append(accs.get(p)).append("-2");
+        }
+        if (random.nextInt(100) == 0) {
+            ids.append(", ").append(accession(accs.size() + r));
+        }
+        if (random.nextInt(50) == 0) {
+            ids.setLength(0);
+        }
+
+        /** Phospho-tyrosine sites, sometimes several, and other mods. */
+        ArrayList<Integer> tyrs = new ArrayList<>();
+        if (random.nextInt(10) < 7) {
+            for (int i = pep.indexOf('Y'); i >= 0;
+                    i = pep.indexOf('Y', i + 1)) {
+                if (tyrs.isEmpty() || random.nextInt(3) == 0) {
+                    tyrs.add(i + 1);
+                }
+            }
+        }
+
+        StringBuilder mods = new StringBuilder();
+        StringBuilder sites = new StringBuilder();
+        int met = pep.indexOf('M');
+        if (met >= 0 && random.nextInt(3) == 0) {
+            mods.append("Oxidation of M(").append(met + 1).append(')');
+        }
+        if (!tyrs.isEmpty()) {
+            mods.append(mods.length() > 0 ? ", " : "")
+                    .append("Phosphorylation of Y(");
+            sites.append("Phosphorylation of Y(");
+            for (int i = 0; i < tyrs.size(); i++) {
+                String sep = i > 0 ? ", " : "";
+                mods.append(sep).append(tyrs.get(i));
+                sites.append(sep).append(start + tyrs.get(i));
+            }
+            mods.append(')');
+            sites.append(')');
+        }
+        int ser = pep.indexOf('S');
+        if (ser >= 0 && random.nextInt(5) == 0) {
+            mods.append(mods.length() > 0 ? ", " : "")
+                    .append("Phosphorylation of S(").append(ser + 1)
+                    .append(')');
+        }
+
+        out.write("\"" + (r + 1) + "\"\t\"" + ids + "\"\t" + pep + "\t"
+                + mods + "\t" + sites + "\t"
+                + String.format(Locale.ROOT, "%.4f",
+                        400 + 1200 * random.nextDouble())
+                + "\t" + random.nextInt(1000) / 100.0 + "\t"
+                + (1 + random.nextInt(12)) + "\t"
+                + String.format(Locale.ROOT, "%.2f",
+                        100 * random.nextDouble()) + "\t"
+                + CONFIDENCE[random.nextInt(CONFIDENCE.length)] + "\n");
+    }
+
+    /**
+     * Writes a workload from the command line.
+     *
+     * @param args prefix, number of proteins, number of peptides and options
+     * @return
+     */
+    public static boolean generate(String[] args) {
+
+        RunOptions options = RunOptions.parse(args, 3);
+
+        try {
+            write(args[0], Integer.parseInt(args[1]),
+                    Integer.parseInt(args[2]), options.seed);
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            return false;
+        }
+
+        return true;
+    }
+}
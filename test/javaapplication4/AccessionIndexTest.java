@@ -0,0 +1,189 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks header resolution against a scan of every referenced accession.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public class AccessionIndexTest {
+
+    /** Parts of the generated accessions and headers. */
+    private static final String[] BASES = {"P1", "P12", "P123", "Q9", "Q9X"};
+    private static final String[] SUFFIXES = {"", "-1", "-2", "-12", ".1",
+        ".2", "_a", "_a.1", "|x", "-", "-a", "1"};
+
+    @Test
+    public void resolvesUniProtByExactAccession() {
+
+        AccessionIndex index = new AccessionIndex(
+                Arrays.asList("P12345", "P12345-2", "Q99"));
+
+        assertEquals("P12345", index.resolve("sp|P12345|KIN_HUMAN"));
+        assertEquals("P12345-2", index.resolve(">sp|P12345-2|KIN_HUMAN"));
+        assertNull(index.resolve("tr|Q991|X_HUMAN"));
+        assertEquals("Q99", index.resolveCanonical("sp|Q99-3|Y_HUMAN"));
+        assertNull(index.resolveCanonical("sp|P12345|KIN_HUMAN"));
+    }
+
+    @Test
+    public void resolvesOtherIdsByLongestPrefix() {
+
+        AccessionIndex index = new AccessionIndex(
+                Arrays.asList("NP_1", "NP_1.2", "XP"));
+
+        assertEquals("NP_1.2", index.resolve("NP_1.2|ref"));
+        assertEquals("NP_1", index.resolve("NP_1.3"));
+        assertNull(index.resolve("NP_12"));
+        assertEquals("XP", index.resolve("XP_9"));
+    }
+
+    @Test
+    public void matchesScanOfAccessions() {
+
+        Random random = new Random(2);
+
+        for (int trial = 0; trial < 200; trial++) {
+
+            Set<String> refs = new HashSet<>();
+            int count = 1 + random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                refs.add(accession(random));
+            }
+
+            AccessionIndex index = new AccessionIndex(refs);
+
+            for (int i = 0; i < 50; i++) {
+                String acc = accession(random);
+                String header = random.nextBoolean()
+                        ? "sp|" + acc + "|NAME_HUMAN" : acc;
+
+                assertEquals(refs + " " + header, resolve(refs, header),
+                        index.resolve(header));
+                assertEquals(refs + " " + header,
+                        resolveCanonical(refs, header),
+                        index.resolveCanonical(header));
+            }
+        }
+    }
+
+    @Test
+    public void sharesRootWithResolvedAccession() {
+
+        Random random = new Random(22);
+
+        for (int i = 0; i < 20000; i++) {
+
+            String ref = accession(random);
+            String other = accession(random);
+            AccessionIndex index = new AccessionIndex(Arrays.asList(ref));
+
+            if (index.resolve(other) != null
+                    || index.resolveCanonical(other) != null) {
+                assertEquals(ref + " " + other, AccessionIndex.root(ref),
+                        AccessionIndex.root(other));
+            }
+        }
+    }
+
+    /**
+     * Generates an accession from the parts, so that prefixes and isoforms
+     * of one another are common.
+     *
+     * @param random
+     * @return accession
+     */
+    private static String accession(Random random) {
+        return BASES[random.nextInt(BASES.length)]
+                + SUFFIXES[random.nextInt(SUFFIXES.length)];
+    }
+
+    /**
+     * Resolves a header by checking every accession.
+     *
+     * @param refs
+     * @param header
+     * @return accession, or null
+     */
+    private static String resolve(Set<String> refs, String header) {
+        return longest(refs, AccessionIndex.accession(header),
+                AccessionIndex.isUniProt(header));
+    }
+
+    /**
+     * Resolves the canonical accession of an isoform header by checking
+     * every accession.
+     *
+     * @param refs
+     * @param header
+     * @return accession, or null
+     */
+    private static String resolveCanonical(Set<String> refs, String header) {
+
+        String acc = AccessionIndex.accession(header);
+        String base = AccessionIndex.canonical(acc);
+        if (base.equals(acc)) {
+            return null;
+        }
+
+        return longest(refs, base, AccessionIndex.isUniProt(header));
+    }
+
+    /**
+     * Returns the accession equal to an id or, unless exact, the longest one
+     * that is a prefix of the id at an identifier boundary.
+     *
+     * @param refs
+     * @param id
+     * @param exact
+     * @return accession, or null
+     */
+    private static String longest(Set<String> refs, String id,
+            boolean exact) {
+
+        if (refs.contains(id)) {
+            return id;
+        }
+        if (exact) {
+            return null;
+        }
+
+        List<String> matches = new ArrayList<>();
+        for (String ref : refs) {
+            if (id.startsWith(ref) && (id.length() == ref.length()
+                    || !Character.isLetterOrDigit(id.charAt(ref.length()))
+                    && id.charAt(ref.length()) != '-')) {
+                matches.add(ref);
+            }
+        }
+
+        String match = null;
+        for (String ref : matches) {
+            if (match == null || ref.length() > match.length()) {
+                match = ref;
+            }
+        }
+
+        return match;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Checks the site parser against regular expressions over both syntaxes.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public class ModParserTest {
+
+    @Test
+    public void readsPeptideShakerSites() {
+
+        ModParser parser = ModParser.PHOSPHO_Y;
+
+        assertArrayEquals(new int[]{3},
+                parser.sites("Phosphorylation of Y(3)"));
+        assertArrayEquals(new int[]{3, 9, 15}, parser.sites(
+                "Oxidation of M(1), Phosphorylation of Y(3, 9, 15)"));
+        assertArrayEquals(new int[0],
+                parser.sites("Phosphorylation of S(2), Oxidation of M(5)"));
+        assertArrayEquals(new int[0], parser.sites(""));
+    }
+
+    @Test
+    public void readsProteinPilotSites() {
+
+        ModParser parser = new ModParser(ModParser.PROTEIN_PILOT_PHOSPHO,
+                "Y", true);
+
+        assertArrayEquals(new int[]{3, 9}, parser.sites(
+                "Oxidation(M)@1; Phospho(Y)@3; Phospho(S)@5; Phospho(Y)@9"));
+        assertArrayEquals(new int[]{12}, parser.sites("Phospho(Y)@12"));
+        assertArrayEquals(new int[0], parser.sites("Phospho(Y)@"));
+    }
+
+    @Test
+    public void ignoresUnclosedGroups() {
+
+        ModParser parser = ModParser.PHOSPHO_Y;
+
+        assertArrayEquals(new int[0], parser.sites("Phosphorylation of Y(3"));
+        assertArrayEquals(new int[]{2}, parser.sites(
+                "Phosphorylation of Y(2), Phosphorylation of Y(4, 7"));
+        assertArrayEquals(new int[0], parser.sites("Phosphorylation of Y"));
+    }
+
+    @Test
+    public void matchesRegularExpressions() {
+
+        Random random = new Random(16);
+
+        for (String residues : new String[]{"Y", "STY"}) {
+
+            ModParser shaker = new ModParser("Phosphorylation", residues,
+                    false);
+            ModParser pilot = new ModParser("Phospho", residues, true);
+
+            for (int i = 0; i < 5000; i++) {
+
+                String mods = shaker(random);
+                assertArrayEquals(mods, sites(Pattern.compile(
+                        "Phosphorylation of [" + residues
+                        + "]\\(([0-9, ]*)\\)"), mods), shaker.sites(mods));
+
+                mods = pilot(random);
+                assertArrayEquals(mods, sites(Pattern.compile(
+                        "Phospho\\([" + residues + "]\\)@([0-9]+)"), mods),
+                        pilot.sites(mods));
+            }
+        }
+    }
+
+    /**
+     * Generates a PeptideShaker modification string, sometimes cut short.
+     *
+     * @param random
+     * @return modifications
+     */
+    private static String shaker(Random random) {
+
+        String[] names = {"Phosphorylation", "Oxidation", "Acetylation"};
+        String residues = "MSTY";
+
+        StringBuilder mods = new StringBuilder();
+        int groups = random.nextInt(4);
+        for (int g = 0; g < groups; g++) {
+            if (g > 0) {
+                mods.append(", ");
+            }
+            mods.append(names[random.nextInt(names.length)]).append(" of ")
+                    .append(residues.charAt(random.nextInt(4))).append('(');
+            int sites = 1 + random.nextInt(4);
+            for (int s = 0; s < sites; s++) {
+                if (s > 0) {
+                    mods.append(", ");
+                }
+                mods.append(1 + random.nextInt(40));
+            }
+            mods.append(')');
+        }
+
+        return cut(random, mods);
+    }
+
+    /**
+     * Generates a ProteinPilot modification string, sometimes cut short.
+     *
+     * @param random
+     * @return modifications
+     */
+    private static String pilot(Random random) {
+
+        String[] names = {"Phospho", "Oxidation", "Acetyl"};
+        String residues = "MSTY";
+
+        StringBuilder mods = new StringBuilder();
+        int sites = random.nextInt(5);
+        for (int s = 0; s < sites; s++) {
+            if (s > 0) {
+                mods.append("; ");
+            }
+            mods.append(names[random.nextInt(names.length)]).append('(')
+                    .append(residues.charAt(random.nextInt(4))).append(")@")
+                    .append(1 + random.nextInt(40));
+        }
+
+        return cut(random, mods);
+    }
+
+    /**
+     * Cuts a string at a random position one time in four, leaving the
+     * last group open.
+     *
+     * @param random
+     * @param mods
+     * @return string
+     */
+    private static String cut(Random random, StringBuilder mods) {
+
+        if (mods.length() > 0 && random.nextInt(4) == 0) {
+            return mods.substring(0, random.nextInt(mods.length()));
+        }
+
+        return mods.toString();
+    }
+
+    /**
+     * Collects the positions of every group a pattern matches.
+     *
+     * @param group pattern capturing the positions of a group
+     * @param mods
+     * @return positions, in order of appearance
+     */
+    private static int[] sites(Pattern group, String mods) {
+
+        List<Integer> sites = new ArrayList<>();
+        Matcher matcher = group.matcher(mods);
+        while (matcher.find()) {
+            for (String site : matcher.group(1).split(",")) {
+                if (!site.trim().isEmpty()) {
+                    sites.add(Integer.parseInt(site.trim()));
+                }
+            }
+        }
+
+        int[] array = new int[sites.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = sites.get(i);
+        }
+
+        return array;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the packed-key table against a HashMap of the windows.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public class MotifTableTest {
+
+    @Test
+    public void keepsLengthInKey() {
+
+        MotifTable table = new MotifTable(9);
+        long[] key = new long[table.words];
+
+        String[] windows = {"", "A", "AA", "AAA", "Y", "AY", "YA", "AYA"};
+        for (int i = 0; i < windows.length; i++) {
+            assertTrue(table.pack(windows[i], 0, windows[i].length(), key,
+                    0));
+            assertEquals(-1, table.get(key, 0));
+            table.put(key, 0, i);
+        }
+
+        for (int i = 0; i < windows.length; i++) {
+            table.pack(windows[i], 0, windows[i].length(), key, 0);
+            assertEquals(windows[i], i, table.get(key, 0));
+            assertEquals(windows[i], table.unpack(key, 0));
+        }
+    }
+
+    @Test
+    public void rejectsNonLetters() {
+
+        MotifTable table = new MotifTable(9);
+        long[] key = new long[table.words];
+
+        assertFalse(table.pack("AY-A", 0, 4, key, 0));
+        assertFalse(table.pack("AyA", 0, 3, key, 0));
+        assertTrue(table.pack("xAYAx", 1, 4, key, 0));
+        assertEquals("AYA", table.unpack(key, 0));
+    }
+
+    @Test
+    public void matchesHashMap() {
+
+        Random random = new Random(21);
+
+        for (int length : new int[]{9, 12, 13, 15, 25}) {
+
+            MotifTable table = new MotifTable(length);
+            Map<String, Integer> expected = new HashMap<>();
+            List<String> order = new ArrayList<>();
+
+            /** Keys at an offset in a shared array, as the run packs them. */
+            long[] keys = new long[3 * table.words];
+            int at = table.words;
+
+            for (int i = 0; i < 20000; i++) {
+
+                String window = window(random, random.nextInt(length + 1),
+                        i % 2 == 0 ? "AY" : "ACDEFGHIKLMNPQRSTVWYZ");
+                assertTrue(table.pack(window, 0, window.length(), keys, at));
+                assertEquals(window, table.unpack(keys, at));
+
+                Integer number = expected.get(window);
+                assertEquals(window, number == null ? -1 : (int) number,
+                        table.get(keys, at));
+
+                if (number == null) {
+                    expected.put(window, order.size());
+                    table.put(keys, at, order.size());
+                    order.add(window);
+                }
+            }
+
+            assertEquals(expected.size(), table.size());
+            for (int i = 0; i < order.size(); i++) {
+                String window = order.get(i);
+                table.pack(window, 0, window.length(), keys, at);
+                assertEquals(window, i, table.get(keys, at));
+            }
+        }
+    }
+
+    private static String window(Random random, int length, String residues) {
+
+        StringBuilder window = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            window.append(residues.charAt(random.nextInt(residues.length())));
+        }
+
+        return window.toString();
+    }
+}
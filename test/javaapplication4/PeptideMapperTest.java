@@ -0,0 +1,126 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the automaton against String.indexOf for every peptide.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public class PeptideMapperTest {
+
+    @Test
+    public void reportsOverlappingAndNestedPeptides() {
+
+        PeptideMapper mapper = new PeptideMapper(
+                Arrays.asList("AYA", "YA", "A", "AYAY"));
+
+        List<String> hits = new ArrayList<>();
+        mapper.scan("AYAYx", (id, offset) -> hits.add(id + "@" + offset));
+        Collections.sort(hits);
+
+        assertEquals(Arrays.asList("0@0", "1@1", "2@0", "2@2", "3@0"),
+                hits);
+    }
+
+    @Test
+    public void matchesIndexOf() {
+
+        Random random = new Random(18);
+
+        for (int trial = 0; trial < 100; trial++) {
+
+            List<String> proteins = new ArrayList<>();
+            for (int p = 0; p < 20; p++) {
+                proteins.add(sequence(random, random.nextInt(300), "ACDY"));
+            }
+
+            /** Distinct peptides, many taken from the proteins. */
+            Set<String> distinct = new LinkedHashSet<>();
+            while (distinct.size() < 1 + trial % 40) {
+                String protein = proteins.get(random.nextInt(20));
+                int length = 1 + random.nextInt(8);
+                if (random.nextBoolean() && protein.length() > length) {
+                    int start = random.nextInt(protein.length() - length);
+                    distinct.add(protein.substring(start, start + length));
+                } else {
+                    distinct.add(sequence(random, length, "ACDEY"));
+                }
+            }
+            List<String> peptides = new ArrayList<>(distinct);
+
+            PeptideMapper mapper = new PeptideMapper(peptides);
+            PeptideMapper.Positions positions = mapper.map(proteins);
+
+            int occurrences = 0;
+            for (int p = 0; p < proteins.size(); p++) {
+
+                String protein = proteins.get(p);
+                List<String> expected = new ArrayList<>();
+                for (int id = 0; id < peptides.size(); id++) {
+
+                    String peptide = peptides.get(id);
+                    assertEquals(peptide + " in " + protein,
+                            protein.indexOf(peptide),
+                            positions.offset(id, p));
+
+                    for (int at = protein.indexOf(peptide); at >= 0;
+                            at = protein.indexOf(peptide, at + 1)) {
+                        expected.add(id + "@" + at);
+                    }
+                }
+
+                List<String> hits = new ArrayList<>();
+                mapper.scan(protein,
+                        (id, offset) -> hits.add(id + "@" + offset));
+                Collections.sort(expected);
+                Collections.sort(hits);
+                assertEquals(protein, expected, hits);
+
+                occurrences += expected.size();
+            }
+
+            assertEquals(occurrences, positions.size());
+        }
+    }
+
+    /**
+     * Generates a sequence, with a residue outside the alphabet now and then
+     * to restart matching.
+     *
+     * @param random
+     * @param length
+     * @param alphabet
+     * @return sequence
+     */
+    private static String sequence(Random random, int length,
+            String alphabet) {
+
+        StringBuilder seq = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            seq.append(random.nextInt(50) == 0 ? 'X'
+                    : alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        return seq.toString();
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the tokenizer against String.split and the in-place number parsing
+ * against Double.parseDouble.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public class ReportReaderTest {
+
+    @Test
+    public void resolvesColumnsByHeader() throws IOException {
+
+        ReportReader report = new ReportReader(
+                new StringReader("\tProtein(s)\t\"Sequence\" \n1\tP1\tAY\n"));
+
+        assertEquals(1, report.column(9, "Protein(s)"));
+        assertEquals(2, report.column(9, "Peptide", "Sequence"));
+        assertEquals(9, report.column(9, "Score"));
+    }
+
+    @Test
+    public void keepsQuotedTabsInOneField() throws IOException {
+
+        ReportReader report = new ReportReader(new StringReader(
+                "a\tb\tc\r\n\"x\ty\"\t\"\"\t\"P1, \"\"P2\"\"\"\n"));
+
+        assertTrue(report.next());
+        assertEquals(3, report.fields());
+        assertEquals("x\ty", report.field(0));
+        assertTrue(report.isEmpty(1));
+        assertEquals("", report.field(1));
+        assertEquals("P1, P2", report.field(2));
+        assertTrue(report.contains(2, "P2"));
+        assertFalse(report.contains(2, "P3"));
+        assertFalse(report.next());
+    }
+
+    @Test
+    public void matchesSplitOfRows() throws IOException {
+
+        Random random = new Random(5);
+        List<String> rows = new ArrayList<>();
+        StringBuilder text = new StringBuilder("h0\th1\n");
+
+        for (int r = 0; r < 2000; r++) {
+
+            StringBuilder row = new StringBuilder();
+            int fields = 1 + random.nextInt(12);
+            for (int f = 0; f < fields; f++) {
+                if (f > 0) {
+                    row.append('\t');
+                }
+                String field = word(random,
+                        r % 500 == 0 ? 70000 : random.nextInt(20));
+                row.append(random.nextBoolean()
+                        ? "\"" + field + "\"" : field);
+            }
+
+            rows.add(row.toString());
+            text.append(row).append(random.nextBoolean() ? "\r\n" : "\n");
+        }
+
+        ReportReader report = new ReportReader(
+                new StringReader(text.toString()));
+
+        for (String row : rows) {
+
+            assertTrue(report.next());
+
+            String[] fields = row.split("\t", -1);
+            assertEquals(row, fields.length, report.fields());
+            for (int f = 0; f < fields.length; f++) {
+                assertEquals(fields[f].replace("\"", ""), report.field(f));
+            }
+        }
+
+        assertFalse(report.next());
+    }
+
+    @Test
+    public void readsLastRowWithoutNewline() throws IOException {
+
+        ReportReader report = new ReportReader(
+                new StringReader("h\n1\n2"));
+
+        assertTrue(report.next());
+        assertEquals("1", report.field(0));
+        assertTrue(report.next());
+        assertEquals("2", report.field(0));
+        assertFalse(report.next());
+    }
+
+    @Test
+    public void parsesNumbersLikeParseDouble() throws IOException {
+
+        Random random = new Random(7);
+        List<String> values = new ArrayList<>();
+
+        for (int i = 0; i < 20000; i++) {
+
+            StringBuilder value = new StringBuilder();
+            if (random.nextInt(4) == 0) {
+                value.append('-');
+            }
+
+            int digits = 1 + random.nextInt(18);
+            int point = random.nextInt(digits + 2) - 1;
+            for (int d = 0; d < digits; d++) {
+                if (d == point) {
+                    value.append('.');
+                }
+                value.append((char) ('0' + random.nextInt(10)));
+            }
+
+            values.add(value.toString());
+        }
+
+        values.add("0.5");
+        values.add(" 12 ");
+        values.add("12.");
+        values.add(".5");
+        values.add("1e-3");
+        values.add("-2.5E4");
+        values.add("123456789012345678901234");
+
+        StringBuilder text = new StringBuilder("Score\n");
+        for (String value : values) {
+            text.append('"').append(value).append("\"\n");
+        }
+
+        ReportReader report = new ReportReader(
+                new StringReader(text.toString()));
+
+        for (String value : values) {
+            assertTrue(report.next());
+            assertEquals(value, Double.parseDouble(value), report.number(0),
+                    0.0);
+        }
+    }
+
+    /**
+     * Generates a field without tabs, quotes or line breaks.
+     *
+     * @param random
+     * @param length
+     * @return field
+     */
+    private static String word(Random random, int length) {
+
+        String letters = "ACDY0123456789 ,.()-|";
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append(letters.charAt(random.nextInt(letters.length())));
+        }
+
+        return word.toString();
+    }
+}
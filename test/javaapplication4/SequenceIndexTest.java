@@ -0,0 +1,193 @@
+/**
+ *****************************************************************************
+ * <p>
+ * Copyright (c) Regents of the University of Minnesota. All Rights Reserved.
+ * <p>
+ * Author: Kevin Murray University of Minnesota - (murra668@umn.edu)
+ * <p>
+ *****************************************************************************
+ */
+package javaapplication4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks the suffix array and backward search against a scan of every
+ * sequence, on repetitive and random sequences.
+ *
+ * @version 1.0
+ * @author murra668
+ */
+public class SequenceIndexTest {
+
+    @Test
+    public void findsEntriesLikeScan() throws IOException {
+
+        Random random = new Random(19);
+
+        List<String> seqs = new ArrayList<>();
+        seqs.add(repeat("A", 500));
+        seqs.add(repeat("AC", 250));
+        seqs.add(repeat("AYAYAC", 40));
+        seqs.add("Y");
+        seqs.add("");
+        for (int i = 0; i < 200; i++) {
+            seqs.add(random(random, random.nextInt(300), "ACDEY"));
+        }
+
+        File fasta = fasta(seqs);
+        SequenceIndex index = SequenceIndex.build(fasta.getPath());
+
+        assertEquals(seqs.size(), index.size());
+        for (int i = 0; i < seqs.size(); i++) {
+            assertEquals("P" + i, index.id(i));
+        }
+
+        for (String peptide : peptides(random, seqs)) {
+            assertArrayEquals(peptide, scan(seqs, peptide),
+                    index.entries(peptide));
+        }
+    }
+
+    @Test
+    public void readsBackWrittenIndex() throws IOException {
+
+        Random random = new Random(20);
+
+        List<String> seqs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            seqs.add(random(random, 1 + random.nextInt(200), "ACY"));
+        }
+
+        File fasta = fasta(seqs);
+        File written = new File(fasta.getPath() + SequenceIndex.EXTENSION);
+        written.deleteOnExit();
+        SequenceIndex.build(fasta.getPath()).write(written.getPath());
+
+        SequenceIndex index = SequenceIndex.find(fasta.getPath());
+        assertNotNull(index);
+
+        for (String peptide : peptides(random, seqs)) {
+            assertArrayEquals(peptide, scan(seqs, peptide),
+                    index.entries(peptide));
+        }
+    }
+
+    /**
+     * Generates peptides: pieces of the sequences, random words, and words
+     * spanning two entries or holding a non-letter, which match nothing.
+     *
+     * @param random
+     * @param seqs
+     * @return peptides
+     */
+    private static List<String> peptides(Random random, List<String> seqs) {
+
+        List<String> peptides = new ArrayList<>(Arrays.asList(
+                "A", "AC", "CA", "YA", "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA",
+                "ay", "A-C", "", "W"));
+
+        for (int i = 0; i < 2000; i++) {
+            String seq = seqs.get(random.nextInt(seqs.size()));
+            int length = 1 + random.nextInt(12);
+            if (random.nextInt(3) > 0 && seq.length() > length) {
+                int start = random.nextInt(seq.length() - length);
+                peptides.add(seq.substring(start, start + length));
+            } else {
+                peptides.add(random(random, length, "ACDEY"));
+            }
+        }
+
+        return peptides;
+    }
+
+    /**
+     * Finds the entries containing a peptide by checking every sequence.
+     *
+     * @param seqs
+     * @param peptide
+     * @return entries in ascending order
+     */
+    private static int[] scan(List<String> seqs, String peptide) {
+
+        String residues = peptide.toUpperCase();
+        if (residues.isEmpty() || !residues.matches("[A-Z]+")) {
+            return new int[0];
+        }
+
+        List<Integer> entries = new ArrayList<>();
+        for (int i = 0; i < seqs.size(); i++) {
+            if (seqs.get(i).contains(residues)) {
+                entries.add(i);
+            }
+        }
+
+        int[] array = new int[entries.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = entries.get(i);
+        }
+
+        return array;
+    }
+
+    /**
+     * Writes the sequences as a temporary FASTA, entries named P0, P1 and so
+     * on, in lines of 60 residues.
+     *
+     * @param seqs
+     * @return file
+     * @throws IOException
+     */
+    private static File fasta(List<String> seqs) throws IOException {
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < seqs.size(); i++) {
+            text.append(">P").append(i).append(" entry ").append(i)
+                    .append('\n');
+            String seq = seqs.get(i);
+            for (int j = 0; j < seq.length(); j += 60) {
+                text.append(seq, j, Math.min(seq.length(), j + 60))
+                        .append('\n');
+            }
+        }
+
+        File fasta = File.createTempFile("kinamine", ".fasta");
+        fasta.deleteOnExit();
+        Files.write(fasta.toPath(),
+                text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        return fasta;
+    }
+
+    private static String repeat(String unit, int times) {
+
+        StringBuilder seq = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            seq.append(unit);
+        }
+
+        return seq.toString();
+    }
+
+    private static String random(Random random, int length, String alphabet) {
+
+        StringBuilder seq = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            seq.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        return seq.toString();
+    }
+}